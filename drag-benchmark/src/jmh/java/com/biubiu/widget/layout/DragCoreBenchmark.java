@@ -0,0 +1,128 @@
+package com.biubiu.widget.layout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DragCore}的 benchmark，覆盖 DragLayout.DragLimited 所有合法的组合。
+ * <p>
+ * 用 ./gradlew :drag-benchmark:jmh 运行，gc profiler 的 gc.alloc.rate.norm 就是每次操作的分配，应该是 0。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DragCoreBenchmark {
+
+    // 一次手势中的事件数
+    private static final int EVENTS_PER_GESTURE = 256;
+    // 事件之间的时间间隔，单位 ms
+    private static final long EVENT_INTERVAL = 8;
+
+    // DragLimited 的所有合法组合，和 DragLayout.DragLimited 上的 @IntDef 一致
+    @Param({"1", "8", "2", "4", "7", "3", "5", "14", "10", "12", "6"})
+    public int dragLimited;
+
+    private DragCore dragCore;
+    // 预先生成的手指轨迹和位移
+    private final float[] xs = new float[EVENTS_PER_GESTURE];
+    private final float[] ys = new float[EVENTS_PER_GESTURE];
+    private final float[] dxs = new float[EVENTS_PER_GESTURE];
+    private final float[] dys = new float[EVENTS_PER_GESTURE];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dragCore = new DragCore();
+        dragCore.setDragLimited(dragLimited);
+        dragCore.setTouchSlop(24);
+        dragCore.setFastDragVelocity(3000);
+        // 1080 * 1920 的父布局中 200 * 200 的 DragLayout
+        dragCore.setBounds(0, 880, 0, 1720);
+
+        // 固定种子的随机游走，每次运行的轨迹都一样，会经常碰到边界
+        Random random = new Random(42);
+        float x = 540;
+        float y = 960;
+        for (int i = 0; i < EVENTS_PER_GESTURE; i++) {
+            float dx = (random.nextFloat() - 0.5f) * 80;
+            float dy = (random.nextFloat() - 0.5f) * 80;
+            x += dx;
+            y += dy;
+            xs[i] = x;
+            ys[i] = y;
+            dxs[i] = dx;
+            dys[i] = dy;
+        }
+    }
+
+    /**
+     * 完整的一次手势：按下、判断 slop、开始拖拽、每个事件计算目标位置、抬手。
+     * 结果是每个事件的吞吐量。
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_GESTURE)
+    public float gesture() {
+        DragCore core = dragCore;
+        core.down(540, 960, 0);
+        float viewX = 440;
+        float viewY = 860;
+        for (int i = 0; i < EVENTS_PER_GESTURE; i++) {
+            float x = xs[i];
+            float y = ys[i];
+            float dX = x - core.getMoveX();
+            float dY = y - core.getMoveY();
+            core.moveTo(x, y);
+            if (!core.isDragging()) {
+                if (core.isDragSlopExceeded(x, y, (i + 1) * EVENT_INTERVAL)) {
+                    core.startDrag();
+                } else if (core.isTouchSlopExceeded(x, y)) {
+                    // 只在不能拖拽的方向上移动，手势交给 child
+                    break;
+                }
+            }
+            if (core.isDragging()) {
+                viewX = core.getTargetX(viewX, dX);
+                viewY = core.getTargetY(viewY, dY);
+            }
+        }
+        core.endDrag();
+        return viewX + viewY;
+    }
+
+    /*每个事件只计算目标位置，也就是拖拽过程中的限制范围的开销*/
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_GESTURE)
+    public void target(Blackhole blackhole) {
+        DragCore core = dragCore;
+        float viewX = 440;
+        float viewY = 860;
+        for (int i = 0; i < EVENTS_PER_GESTURE; i++) {
+            viewX = core.getTargetX(viewX, dxs[i]);
+            viewY = core.getTargetY(viewY, dys[i]);
+            blackhole.consume(viewX);
+            blackhole.consume(viewY);
+        }
+    }
+
+    /*只有 clampX、clampY*/
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_GESTURE)
+    public void clamp(Blackhole blackhole) {
+        DragCore core = dragCore;
+        for (int i = 0; i < EVENTS_PER_GESTURE; i++) {
+            blackhole.consume(core.clampX(xs[i]));
+            blackhole.consume(core.clampY(ys[i]));
+        }
+    }
+}
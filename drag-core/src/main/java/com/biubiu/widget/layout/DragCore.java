@@ -0,0 +1,231 @@
+package com.biubiu.widget.layout;
+
+/**
+ * 拖拽的核心逻辑，不依赖 Android：拖拽状态、touch slop 的判断、可拖拽方向的规则以及 INSIDE_PARENT 的范围限制。
+ * DragLayout 把这些逻辑交给 DragCore，自己只负责事件分发和移动 View，因此这部分可以直接在 JVM 上测试和做 benchmark。
+ * <p>
+ * 坐标的含义由使用者决定，DragLayout 中手指的位置用的是 raw 坐标，范围和目标位置用的是父布局中的坐标。
+ * 所有方法都没有分配。
+ */
+public class DragCore {
+
+    // 拖拽范围的类型，含义参见 DragLayout.DragLimited
+    public static final int INSIDE_PARENT = 1;//  不能超过其父布局
+
+    public static final int HORIZONTAL = 1 << 1;// 水平方向移动
+
+    public static final int VERTICAL = 1 << 2;// 垂直方向移动
+
+    public static final int WITHOUT_LIMITED = 1 << 3;//  无限制
+
+    public static final int DRAG_LIMITED_ILLEGAL = INSIDE_PARENT | WITHOUT_LIMITED;
+
+    private int dragLimited = INSIDE_PARENT;
+    // 以下三个值由 dragLimited 决定，每次移动都要用到，提前算好
+    private boolean isInsideParent = true;
+    private boolean isHorizontal = true;
+    private boolean isVertical = true;
+
+    private float touchSlop;
+    private float fastDragVelocity = Float.MAX_VALUE;
+
+    // INSIDE_PARENT 时允许的范围
+    private float minX = -Float.MAX_VALUE;
+    private float maxX = Float.MAX_VALUE;
+    private float minY = -Float.MAX_VALUE;
+    private float maxY = Float.MAX_VALUE;
+
+    private boolean isDragging;
+    private float downX;
+    private float downY;
+    private long downTime;
+    private float moveX;
+    private float moveY;
+
+    /**
+     * 设置拖拽的范围
+     *
+     * @param limited 参见 DragLayout.DragLimited
+     */
+    public void setDragLimited(int limited) {
+        if ((limited & DRAG_LIMITED_ILLEGAL) == DRAG_LIMITED_ILLEGAL) {
+            throw new RuntimeException("检测到 setDragLimited() 输入了非法的类型！不能同时应用 INSIDE_PARENT 和 WITHOUT_LIMITED");
+        }
+        dragLimited = limited;
+        isInsideParent = (limited & INSIDE_PARENT) == INSIDE_PARENT;
+        // 有 Vertical 没有 Horizontal，就是不行的，其他的都行
+        isHorizontal = (limited & VERTICAL) != VERTICAL || (limited & HORIZONTAL) == HORIZONTAL;
+        // 有 Horizontal 没有 Vertical，就是不行的，其他的都行
+        isVertical = (limited & HORIZONTAL) != HORIZONTAL || (limited & VERTICAL) == VERTICAL;
+    }
+
+    public int getDragLimited() {
+        return dragLimited;
+    }
+
+    public boolean isInsideParent() {
+        return isInsideParent;
+    }
+
+    /*能否水平方向拖拽*/
+    public boolean isHorizontal() {
+        return isHorizontal;
+    }
+
+    /*能否垂直方向拖拽*/
+    public boolean isVertical() {
+        return isVertical;
+    }
+
+    /**
+     * @param touchSlop 超过这个距离才开始拖拽
+     */
+    public void setTouchSlop(float touchSlop) {
+        this.touchSlop = touchSlop;
+    }
+
+    public float getTouchSlop() {
+        return touchSlop;
+    }
+
+    /**
+     * 不要用 minimum fling velocity，它太小了，点击时手指轻微的抖动都会超过，等于所有手势的 touch slop 都减半了。
+     *
+     * @param fastDragVelocity 手指移动的速度超过这个值（单位 px/s）时，只需要一半的 touch slop 就开始拖拽，默认不启用
+     */
+    public void setFastDragVelocity(float fastDragVelocity) {
+        this.fastDragVelocity = fastDragVelocity;
+    }
+
+    public float getFastDragVelocity() {
+        return fastDragVelocity;
+    }
+
+    /**
+     * 设置 INSIDE_PARENT 时允许的范围，最大值小于最小值时以最小值为准
+     */
+    public void setBounds(float minX, float maxX, float minY, float maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    /*按照 INSIDE_PARENT 的规则限制 x*/
+    public float clampX(float x) {
+        if (isInsideParent) {
+            x = Math.min(x, maxX);
+            x = Math.max(x, minX);
+        }
+        return x;
+    }
+
+    /*按照 INSIDE_PARENT 的规则限制 y*/
+    public float clampY(float y) {
+        if (isInsideParent) {
+            y = Math.min(y, maxY);
+            y = Math.max(y, minY);
+        }
+        return y;
+    }
+
+    /*从 x 移动 dX 之后的位置，不能水平拖拽时保持不变*/
+    public float getTargetX(float x, float dX) {
+        return isHorizontal ? clampX(x + dX) : x;
+    }
+
+    /*从 y 移动 dY 之后的位置，不能垂直拖拽时保持不变*/
+    public float getTargetY(float y, float dY) {
+        return isVertical ? clampY(y + dY) : y;
+    }
+
+    /*手指按下，新的手势开始*/
+    public void down(float x, float y, long time) {
+        // 上一次拖拽没有正常结束的话，也不能带到新的手势中
+        isDragging = false;
+        downX = moveX = x;
+        downY = moveY = y;
+        downTime = time;
+    }
+
+    /*记录手指移动到的位置*/
+    public void moveTo(float x, float y) {
+        moveX = x;
+        moveY = y;
+    }
+
+    /**
+     * 跟随的手指换成了另一根，新的手指在 (x, y)。
+     * 按下的位置跟着平移，已经移动的距离保持不变，下一次移动只计算新手指的位移，不会跳动。
+     */
+    public void switchPointer(float x, float y) {
+        downX += x - moveX;
+        downY += y - moveY;
+        moveX = x;
+        moveY = y;
+    }
+
+    public float getDownX() {
+        return downX;
+    }
+
+    public float getDownY() {
+        return downY;
+    }
+
+    public float getMoveX() {
+        return moveX;
+    }
+
+    public float getMoveY() {
+        return moveY;
+    }
+
+    /**
+     * 手指移动到 (x, y) 时是否足以开始拖拽。
+     * 只看可以拖拽的方向；移动得很快的时候，只需要一半的 touch slop 就开始拖拽。
+     */
+    public boolean isDragSlopExceeded(float x, float y, long time) {
+        float distanceX = Math.abs(x - downX);
+        float distanceY = Math.abs(y - downY);
+        float slop = touchSlop;
+        long duration = time - downTime;
+        if (duration > 0 && Math.hypot(distanceX, distanceY) * 1000 / duration > fastDragVelocity) {
+            slop = touchSlop / 2f;
+        }
+        return (isHorizontal && distanceX > slop) || (isVertical && distanceY > slop);
+    }
+
+    /*手指移动到 (x, y) 时是否在任意方向上超过了 touch slop，isDragSlopExceeded 不成立时说明只在不能拖拽的方向上移动*/
+    public boolean isTouchSlopExceeded(float x, float y) {
+        return Math.abs(x - downX) > touchSlop || Math.abs(y - downY) > touchSlop;
+    }
+
+    public void startDrag() {
+        isDragging = true;
+    }
+
+    public void endDrag() {
+        isDragging = false;
+    }
+
+    public boolean isDragging() {
+        return isDragging;
+    }
+}
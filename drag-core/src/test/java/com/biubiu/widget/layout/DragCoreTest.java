@@ -0,0 +1,125 @@
+package com.biubiu.widget.layout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DragCore 不依赖 Android，直接在 JVM 上检查 touch slop、可拖拽方向、范围限制和换手指
+ */
+public class DragCoreTest {
+
+    private static final float TOUCH_SLOP = 24;
+    private static final float FAST_DRAG_VELOCITY = 3000;
+    private static final float DELTA = 0.001f;
+
+    private DragCore dragCore;
+
+    @Before
+    public void setUp() {
+        dragCore = new DragCore();
+        dragCore.setTouchSlop(TOUCH_SLOP);
+        dragCore.setFastDragVelocity(FAST_DRAG_VELOCITY);
+        dragCore.setBounds(0, 800, 0, 1600);
+        dragCore.down(100, 100, 0);
+    }
+
+    @Test
+    public void slop() {
+        assertFalse(dragCore.isDragSlopExceeded(100 + TOUCH_SLOP, 100, 1000));
+        assertTrue(dragCore.isDragSlopExceeded(100 + TOUCH_SLOP + 1, 100, 1000));
+        assertTrue(dragCore.isDragSlopExceeded(100, 100 - TOUCH_SLOP - 1, 1000));
+    }
+
+    @Test
+    public void halfSlopOnlyWhenFast() {
+        float halfSlop = TOUCH_SLOP / 2 + 1;
+        // 1000ms 移动十几个像素，很慢，还是要完整的 touch slop
+        assertFalse(dragCore.isDragSlopExceeded(100 + halfSlop, 100, 1000));
+        // 1ms 就移动了十几个像素，超过了 fastDragVelocity
+        assertTrue(dragCore.isDragSlopExceeded(100 + halfSlop, 100, 1));
+        // 按下的时间点上不能计算速度
+        assertFalse(dragCore.isDragSlopExceeded(100 + halfSlop, 100, 0));
+    }
+
+    @Test
+    public void touchSlopInAnyDirection() {
+        dragCore.setDragLimited(DragCore.INSIDE_PARENT | DragCore.HORIZONTAL);
+        assertFalse(dragCore.isTouchSlopExceeded(100 + TOUCH_SLOP, 100 - TOUCH_SLOP));
+        assertTrue(dragCore.isTouchSlopExceeded(100, 100 + TOUCH_SLOP + 1));
+    }
+
+    @Test
+    public void axisLock() {
+        dragCore.setDragLimited(DragCore.INSIDE_PARENT | DragCore.HORIZONTAL);
+        assertTrue(dragCore.isHorizontal());
+        assertFalse(dragCore.isVertical());
+        // 只在不能拖拽的方向上超过 touch slop，不能开始拖拽，但已经不是点击了
+        assertFalse(dragCore.isDragSlopExceeded(100, 200, 1000));
+        assertTrue(dragCore.isTouchSlopExceeded(100, 200));
+        assertEquals(50, dragCore.getTargetX(10, 40), DELTA);
+        assertEquals(10, dragCore.getTargetY(10, 40), DELTA);
+
+        dragCore.setDragLimited(DragCore.WITHOUT_LIMITED | DragCore.VERTICAL);
+        assertFalse(dragCore.isHorizontal());
+        assertTrue(dragCore.isVertical());
+        assertTrue(dragCore.isDragSlopExceeded(100, 200, 1000));
+        assertEquals(10, dragCore.getTargetX(10, 40), DELTA);
+        assertEquals(50, dragCore.getTargetY(10, 40), DELTA);
+
+        // 两个方向都给了和都不给一样，都可以拖拽
+        dragCore.setDragLimited(DragCore.INSIDE_PARENT | DragCore.HORIZONTAL | DragCore.VERTICAL);
+        assertTrue(dragCore.isHorizontal());
+        assertTrue(dragCore.isVertical());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void illegalLimited() {
+        dragCore.setDragLimited(DragCore.INSIDE_PARENT | DragCore.WITHOUT_LIMITED);
+    }
+
+    @Test
+    public void clamp() {
+        assertEquals(0, dragCore.getTargetX(10, -40), DELTA);
+        assertEquals(800, dragCore.getTargetX(790, 40), DELTA);
+        assertEquals(0, dragCore.getTargetY(10, -40), DELTA);
+        assertEquals(1600, dragCore.getTargetY(1590, 40), DELTA);
+
+        // 没有 INSIDE_PARENT 时不限制
+        dragCore.setDragLimited(DragCore.WITHOUT_LIMITED);
+        assertEquals(-30, dragCore.getTargetX(10, -40), DELTA);
+        assertEquals(1630, dragCore.getTargetY(1590, 40), DELTA);
+    }
+
+    @Test
+    public void clampWhenBoundsInverted() {
+        // 父布局比自己还小，最大值小于最小值，以最小值为准
+        dragCore.setBounds(0, -100, 0, -100);
+        assertEquals(0, dragCore.clampX(-50), DELTA);
+        assertEquals(0, dragCore.clampY(50), DELTA);
+    }
+
+    @Test
+    public void switchPointer() {
+        dragCore.moveTo(150, 130);
+        // 新的手指在另外一个位置，已经移动的距离不变
+        dragCore.switchPointer(400, 500);
+        assertEquals(400, dragCore.getMoveX(), DELTA);
+        assertEquals(500, dragCore.getMoveY(), DELTA);
+        assertEquals(350, dragCore.getDownX(), DELTA);
+        assertEquals(470, dragCore.getDownY(), DELTA);
+        // 之后只计算新手指的位移，不会因为两根手指距离远就超过 touch slop
+        assertFalse(dragCore.isTouchSlopExceeded(350 + TOUCH_SLOP, 470));
+    }
+
+    @Test
+    public void downResetsDragging() {
+        dragCore.startDrag();
+        assertTrue(dragCore.isDragging());
+        dragCore.down(0, 0, 100);
+        assertFalse(dragCore.isDragging());
+    }
+}
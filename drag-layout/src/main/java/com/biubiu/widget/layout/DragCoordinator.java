@@ -0,0 +1,558 @@
+package com.biubiu.widget.layout;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.RelativeLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * 用来承载大量 DragLayout 的父布局，RelativeLayout。
+ * <p>
+ * 普通的 ViewGroup 在每次 ACTION_DOWN 时会从后往前遍历所有的 child 来找到触摸的目标，
+ * 而 DragCoordinator 把所有 child 的范围保存在网格索引中，只检查触摸点所在格子中的 child，
+ * 选出最上层的那一个，然后把整个手势直接交给它，重叠的 DragLayout 不会再互相争抢手势。
+ * 拖拽、点击、长按依旧由 child 自己的 DragLayout 逻辑处理，{@link DragLayout.DragLimited}和
+ * {@link DragLayout.OnDragListener}的含义都不变。
+ * <p>
+ * 索引在 layout 之后重建；DragLayout 的位置变化只会把自己标记出来，下一次 ACTION_DOWN 时再更新，
+ * 因此拖拽过程中每个事件的开销和 child 的个数无关。
+ * 其他 child 的移动，以及 ViewPropertyAnimator 这类绕过 setTranslationX 的移动，通过 child 的重绘发现，
+ * 同样在下一次 ACTION_DOWN 时更新。
+ * <p>
+ * 设置了{@link DragSolver}的话，每次 DragLayout 放下之后会在后台线程重新排布所有 child，参见{@link #setDragSolver(DragSolver)}。
+ * <p>
+ * 默认整个手势只交给第一根手指下的 child；开启{@link #setMultiDragEnable(boolean)}之后，
+ * 每根手指交给它按下位置最上层的 child，可以用多根手指同时拖拽多个 DragLayout。
+ */
+public class DragCoordinator extends RelativeLayout {
+
+    // 索引网格的格子大小，单位 dp
+    private static final float CELL_SIZE = 48;
+    private static final int DEFAULT_CAPACITY = 16;
+    // 同时按下的手指个数的初始容量，超过时扩容
+    private static final int DEFAULT_POINTER_CAPACITY = 4;
+
+    private final SpatialGrid childIndex;
+    private boolean isIndexDirty = true;
+    // 下标是 child 在索引中的 id
+    private View[] indexedChildren = new View[DEFAULT_CAPACITY];
+    private int indexedCount;
+    // 位置变化过、还没有更新到索引中的 child，movedFlags 的下标是 id，避免重复记录
+    private int[] movedIds = new int[DEFAULT_CAPACITY];
+    private int movedCount;
+    private boolean[] movedFlags = new boolean[DEFAULT_CAPACITY];
+    // 不是 DragLayout 的 child 在索引中的 id，DragLayout 自己记录在 coordinatorId 中；
+    // IdentityHashMap 的键值保存在同一个数组中，查找不会分配
+    private final IdentityHashMap<View, Integer> plainChildIds = new IdentityHashMap<>();
+
+    // 当前手势的目标
+    private View touchTarget;
+
+    // 多指拖拽时，每根手指各自的目标，下标相同的是同一根手指
+    private boolean multiDragEnable;
+    private boolean isSplitting;
+    private View[] pointerTargets = new View[DEFAULT_POINTER_CAPACITY];
+    private int[] pointerTargetIds = new int[DEFAULT_POINTER_CAPACITY];
+    private long[] pointerDownTimes = new long[DEFAULT_POINTER_CAPACITY];
+    private int pointerTargetCount;
+    // 构建单点事件用的，每次复用
+    private final MotionEvent.PointerProperties[] splitProperties = {new MotionEvent.PointerProperties()};
+    private final MotionEvent.PointerCoords[] splitCoords = {new MotionEvent.PointerCoords()};
+
+    // 放下之后在后台线程重新排布所有 child，为 null 表示不排布
+    private DragSolver dragSolver;
+
+    private final RectF tempRect = new RectF();
+    private final Matrix tempMatrix = new Matrix();
+    private final float[] tempPoint = new float[2];
+
+    public DragCoordinator(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public DragCoordinator(@NonNull Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public DragCoordinator(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        childIndex = new SpatialGrid(CELL_SIZE * getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * 设置放下之后的排布，比如{@link DragSolver.Algorithm#RESOLVE_OVERLAPS}消除重叠。
+     * 计算在后台线程进行，结果在下一帧以动画的形式应用；计算期间开始新的拖拽会取消这次计算。
+     *
+     * @param dragSolver 为 null 表示不排布
+     */
+    public void setDragSolver(DragSolver dragSolver) {
+        if (this.dragSolver != null) {
+            this.dragSolver.cancel();
+        }
+        this.dragSolver = dragSolver;
+    }
+
+    public DragSolver getDragSolver() {
+        return dragSolver;
+    }
+
+    /**
+     * 立即按照{@link DragSolver}重新排布一次，比如增删 child 之后。没有设置 DragSolver 时什么也不做。
+     */
+    public void solve() {
+        if (dragSolver != null) {
+            dragSolver.solve(this, null);
+        }
+    }
+
+    /**
+     * 是否允许多根手指同时拖拽不同的 DragLayout，默认不允许。
+     * 开启之后每根手指交给它按下位置最上层的 child，child 只收到自己那根手指的单点事件；
+     * 落在已经有手指的 child 上的手指会被忽略。
+     */
+    public void setMultiDragEnable(boolean multiDragEnable) {
+        this.multiDragEnable = multiDragEnable;
+    }
+
+    public boolean isMultiDragEnable() {
+        return multiDragEnable;
+    }
+
+    /*child 开始拖拽，之前的排布已经过时了*/
+    void onChildDragStart(DragLayout child) {
+        if (dragSolver != null) {
+            dragSolver.cancel();
+        }
+    }
+
+    /*child 放下并且惯性滑动、吸附都结束之后，以它最终的位置为准重新排布；还有别的 child 在拖拽时，等最后一个放下再排布*/
+    void onChildSettled(DragLayout child) {
+        if (dragSolver == null) {
+            return;
+        }
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            View other = getChildAt(i);
+            if (other != child && other instanceof DragLayout && ((DragLayout) other).isDragging()) {
+                return;
+            }
+        }
+        dragSolver.solve(this, child);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        clearPointerTargets();
+        isSplitting = false;
+        if (dragSolver != null) {
+            dragSolver.cancel();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        // child 的增删和位置变化都会引起重新 layout
+        isIndexDirty = true;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            isSplitting = multiDragEnable;
+            clearPointerTargets();
+        }
+        if (isSplitting) {
+            return dispatchSplitTouchEvent(ev);
+        }
+        if (action == MotionEvent.ACTION_DOWN) {
+            touchTarget = findTopChildUnder(ev.getX(), ev.getY());
+        } else if (touchTarget != null && touchTarget.getParent() != this) {
+            // 手势进行中目标被移除了
+            touchTarget = null;
+        }
+        if (touchTarget == null) {
+            // 没有命中任何 child，按普通的 ViewGroup 处理
+            return super.dispatchTouchEvent(ev);
+        }
+
+        boolean handled = dispatchToChild(touchTarget, ev);
+        if (action == MotionEvent.ACTION_DOWN && !handled) {
+            // child 不处理这个手势，交还给普通的 ViewGroup 处理
+            touchTarget = null;
+            return super.dispatchTouchEvent(ev);
+        }
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            touchTarget = null;
+        }
+        return handled;
+    }
+
+    /*多指拖拽，每根手指的事件拆成单点事件交给它自己的目标*/
+    private boolean dispatchSplitTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                if (!addPointerTarget(ev, 0)) {
+                    // 第一根手指没有命中任何 child，整个手势按普通的 ViewGroup 处理
+                    isSplitting = false;
+                    return super.dispatchTouchEvent(ev);
+                }
+                return true;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                addPointerTarget(ev, ev.getActionIndex());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                for (int i = 0; i < pointerTargetCount; i++) {
+                    int pointerIndex = ev.findPointerIndex(pointerTargetIds[i]);
+                    if (pointerIndex >= 0 && pointerTargets[i].getParent() == this) {
+                        dispatchSplitEvent(i, ev, pointerIndex, MotionEvent.ACTION_MOVE);
+                    }
+                }
+                return true;
+            case MotionEvent.ACTION_POINTER_UP: {
+                int actionIndex = ev.getActionIndex();
+                int i = indexOfPointerTarget(ev.getPointerId(actionIndex));
+                if (i >= 0) {
+                    if (pointerTargets[i].getParent() == this) {
+                        dispatchSplitEvent(i, ev, actionIndex, MotionEvent.ACTION_UP);
+                    }
+                    removePointerTarget(i);
+                }
+                return true;
+            }
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                // 抬起的是最后一根手指，其他目标的手指都已经抬起了；取消时所有目标都收到取消
+                for (int i = 0; i < pointerTargetCount; i++) {
+                    if (pointerTargets[i].getParent() != this) {
+                        continue;
+                    }
+                    int pointerIndex = ev.findPointerIndex(pointerTargetIds[i]);
+                    if (pointerIndex >= 0) {
+                        dispatchSplitEvent(i, ev, pointerIndex, action);
+                    } else {
+                        dispatchSplitEvent(i, ev, 0, MotionEvent.ACTION_CANCEL);
+                    }
+                }
+                clearPointerTargets();
+                isSplitting = false;
+                return true;
+        }
+        return true;
+    }
+
+    /*把 pointerIndex 这根手指交给它按下位置最上层的 child，child 不处理或者已经有别的手指时忽略这根手指*/
+    private boolean addPointerTarget(MotionEvent ev, int pointerIndex) {
+        View target = findTopChildUnder(ev.getX(pointerIndex), ev.getY(pointerIndex));
+        if (target == null) {
+            return false;
+        }
+        for (int i = 0; i < pointerTargetCount; i++) {
+            if (pointerTargets[i] == target) {
+                return false;
+            }
+        }
+        if (pointerTargetCount == pointerTargets.length) {
+            pointerTargets = Arrays.copyOf(pointerTargets, pointerTargetCount * 2);
+            pointerTargetIds = Arrays.copyOf(pointerTargetIds, pointerTargetCount * 2);
+            pointerDownTimes = Arrays.copyOf(pointerDownTimes, pointerTargetCount * 2);
+        }
+        int i = pointerTargetCount;
+        pointerTargets[i] = target;
+        pointerTargetIds[i] = ev.getPointerId(pointerIndex);
+        // 对 child 来说这根手指是一个新的手势，从这根手指按下的时间开始
+        pointerDownTimes[i] = ev.getEventTime();
+        if (!dispatchSplitEvent(i, ev, pointerIndex, MotionEvent.ACTION_DOWN)) {
+            pointerTargets[i] = null;
+            return false;
+        }
+        pointerTargetCount++;
+        return true;
+    }
+
+    private int indexOfPointerTarget(int pointerId) {
+        for (int i = 0; i < pointerTargetCount; i++) {
+            if (pointerTargetIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removePointerTarget(int i) {
+        int moved = pointerTargetCount - i - 1;
+        System.arraycopy(pointerTargets, i + 1, pointerTargets, i, moved);
+        System.arraycopy(pointerTargetIds, i + 1, pointerTargetIds, i, moved);
+        System.arraycopy(pointerDownTimes, i + 1, pointerDownTimes, i, moved);
+        pointerTargets[--pointerTargetCount] = null;
+    }
+
+    private void clearPointerTargets() {
+        Arrays.fill(pointerTargets, 0, pointerTargetCount, null);
+        pointerTargetCount = 0;
+    }
+
+    /**
+     * 把事件中 pointerIndex 这根手指（包括 historical 采样点）拆成单点事件交给第 i 个目标。
+     * 单点事件以屏幕坐标构建之后再平移回来，child 的 getRawX、getRawY 依旧是屏幕坐标；
+     * 用完立即回收，复用 PointerProperties、PointerCoords，拆分事件不会产生分配。
+     */
+    private boolean dispatchSplitEvent(int i, MotionEvent ev, int pointerIndex, int action) {
+        float rawOffsetX = ev.getRawX() - ev.getX();
+        float rawOffsetY = ev.getRawY() - ev.getY();
+        ev.getPointerProperties(pointerIndex, splitProperties[0]);
+        MotionEvent.PointerCoords coords = splitCoords[0];
+        int historySize = action == MotionEvent.ACTION_MOVE ? ev.getHistorySize() : 0;
+        MotionEvent split = null;
+        for (int h = 0; h <= historySize; h++) {
+            long eventTime;
+            if (h < historySize) {
+                ev.getHistoricalPointerCoords(pointerIndex, h, coords);
+                eventTime = ev.getHistoricalEventTime(h);
+            } else {
+                ev.getPointerCoords(pointerIndex, coords);
+                eventTime = ev.getEventTime();
+            }
+            coords.x += rawOffsetX;
+            coords.y += rawOffsetY;
+            if (split == null) {
+                split = MotionEvent.obtain(pointerDownTimes[i], eventTime, action, 1, splitProperties, splitCoords,
+                        ev.getMetaState(), ev.getButtonState(), ev.getXPrecision(), ev.getYPrecision(),
+                        ev.getDeviceId(), ev.getEdgeFlags(), ev.getSource(), ev.getFlags());
+            } else {
+                split.addBatch(eventTime, splitCoords, ev.getMetaState());
+            }
+        }
+        split.offsetLocation(-rawOffsetX, -rawOffsetY);
+        boolean handled = dispatchToChild(pointerTargets[i], split);
+        split.recycle();
+        return handled;
+    }
+
+    /*
+     * child 重绘时它的位置可能变了，比如 ViewPropertyAnimator 直接修改 RenderNode 的属性，不经过 DragLayout 的 setTranslationX。
+     * 只标记这一个 child，下一次 ACTION_DOWN 时只更新它在索引中的位置
+     */
+    @Override
+    public void onDescendantInvalidated(@NonNull View child, @NonNull View target) {
+        super.onDescendantInvalidated(child, target);
+        if (child instanceof DragLayout) {
+            onChildMoved((DragLayout) child);
+        } else {
+            onPlainChildMoved(child);
+        }
+    }
+
+    /*
+     * Android O 之前没有 onDescendantInvalidated（O 之后软件绘制时也一样），child 的重绘经过这里。
+     * 进入时 location 是重绘经过的那个直接 child 的 left、top，只能据此找到 child，left、top 相同的都标记
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        if (!isIndexDirty) {
+            int left = location[0];
+            int top = location[1];
+            for (int id = 0; id < indexedCount; id++) {
+                View child = indexedChildren[id];
+                if (child.getLeft() == left && child.getTop() == top) {
+                    if (child instanceof DragLayout) {
+                        onChildMoved((DragLayout) child);
+                    } else {
+                        onPlainChildMoved(child);
+                    }
+                }
+            }
+        }
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    /*DragLayout 的位置发生了变化，在下一次 ACTION_DOWN 时更新索引*/
+    void onChildMoved(DragLayout child) {
+        if (isIndexDirty || child.isCoordinatorMoved) {
+            return;
+        }
+        int id = child.coordinatorId;
+        if (id < 0 || id >= indexedCount || indexedChildren[id] != child) {
+            isIndexDirty = true;
+            return;
+        }
+        child.isCoordinatorMoved = true;
+        markChildMoved(id);
+    }
+
+    /*不是 DragLayout 的 child 位置可能变了，同样只在下一次 ACTION_DOWN 时更新它自己*/
+    private void onPlainChildMoved(View child) {
+        if (isIndexDirty) {
+            return;
+        }
+        Integer id = plainChildIds.get(child);
+        if (id == null || indexedChildren[id] != child) {
+            isIndexDirty = true;
+            return;
+        }
+        markChildMoved(id);
+    }
+
+    private void markChildMoved(int id) {
+        if (movedFlags[id]) {
+            return;
+        }
+        movedFlags[id] = true;
+        if (movedCount == movedIds.length) {
+            movedIds = Arrays.copyOf(movedIds, movedCount * 2);
+        }
+        movedIds[movedCount++] = id;
+    }
+
+    /**
+     * 查找 (x, y) 下最上层的 child，坐标是 DragCoordinator 自己的坐标
+     */
+    @Nullable
+    private View findTopChildUnder(float x, float y) {
+        updateChildIndex();
+        // 转换成 child 的坐标系，和 ViewGroup 分发事件时的计算方式一致
+        float scrolledX = x + getScrollX();
+        float scrolledY = y + getScrollY();
+        int count = childIndex.queryPoint(scrolledX, scrolledY);
+        View target = null;
+        int targetId = -1;
+        float targetZ = 0;
+        for (int i = 0; i < count; i++) {
+            int id = childIndex.getResult(i);
+            View child = indexedChildren[id];
+            if (child.getVisibility() != VISIBLE || !isPointInChild(child, scrolledX, scrolledY)) {
+                continue;
+            }
+            // 先比较 Z，再比较绘制顺序，越靠后的 child 越在上层
+            float z = ViewCompat.getZ(child);
+            if (target == null || z > targetZ || (z == targetZ && id > targetId)) {
+                target = child;
+                targetId = id;
+                targetZ = z;
+            }
+        }
+        return target;
+    }
+
+    /*DragLayout 只会改变 translation，这种情况不需要做矩阵运算*/
+    private static boolean isTranslationOnly(View child) {
+        return child.getScaleX() == 1 && child.getScaleY() == 1 && child.getRotation() == 0
+                && child.getRotationX() == 0 && child.getRotationY() == 0;
+    }
+
+    private boolean isPointInChild(View child, float x, float y) {
+        if (isTranslationOnly(child)) {
+            x -= child.getTranslationX();
+            y -= child.getTranslationY();
+            return x >= child.getLeft() && x < child.getRight() && y >= child.getTop() && y < child.getBottom();
+        }
+        tempPoint[0] = x - child.getLeft();
+        tempPoint[1] = y - child.getTop();
+        if (!child.getMatrix().invert(tempMatrix)) {
+            return false;
+        }
+        tempMatrix.mapPoints(tempPoint);
+        return tempPoint[0] >= 0 && tempPoint[0] < child.getWidth()
+                && tempPoint[1] >= 0 && tempPoint[1] < child.getHeight();
+    }
+
+    /*把事件转换到 child 的坐标系之后交给 child*/
+    private boolean dispatchToChild(View child, MotionEvent ev) {
+        float offsetX = getScrollX() - child.getLeft();
+        float offsetY = getScrollY() - child.getTop();
+        if (isTranslationOnly(child)) {
+            offsetX -= child.getTranslationX();
+            offsetY -= child.getTranslationY();
+            ev.offsetLocation(offsetX, offsetY);
+            boolean handled = child.dispatchTouchEvent(ev);
+            ev.offsetLocation(-offsetX, -offsetY);
+            return handled;
+        }
+        // 有缩放、旋转的 child 需要做矩阵变换，拷贝一份事件，不修改原来的事件
+        MotionEvent transformed = MotionEvent.obtain(ev);
+        transformed.offsetLocation(offsetX, offsetY);
+        if (child.getMatrix().invert(tempMatrix)) {
+            transformed.transform(tempMatrix);
+        }
+        boolean handled = child.dispatchTouchEvent(transformed);
+        transformed.recycle();
+        return handled;
+    }
+
+    /*layout 之后重建索引，否则只更新位置变化过的 DragLayout*/
+    private void updateChildIndex() {
+        int childCount = getChildCount();
+        if (isIndexDirty || childCount != indexedCount) {
+            rebuildChildIndex();
+            return;
+        }
+        for (int i = 0; i < movedCount; i++) {
+            int id = movedIds[i];
+            View child = indexedChildren[id];
+            movedFlags[id] = false;
+            if (child instanceof DragLayout) {
+                ((DragLayout) child).isCoordinatorMoved = false;
+            }
+            getChildBounds(child, tempRect);
+            childIndex.update(id, tempRect.left, tempRect.top, tempRect.right, tempRect.bottom);
+        }
+        movedCount = 0;
+    }
+
+    private void rebuildChildIndex() {
+        childIndex.setWorld(0, 0, Math.max(getWidth(), getMeasuredWidth()), Math.max(getHeight(), getMeasuredHeight()));
+        childIndex.clear();
+        Arrays.fill(indexedChildren, 0, indexedCount, null);
+        plainChildIds.clear();
+        int childCount = getChildCount();
+        if (indexedChildren.length < childCount) {
+            indexedChildren = new View[Math.max(childCount, indexedChildren.length * 2)];
+            movedFlags = new boolean[indexedChildren.length];
+        } else {
+            Arrays.fill(movedFlags, false);
+        }
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            getChildBounds(child, tempRect);
+            // 索引清空之后 id 从 0 开始依次分配，和 child 的下标一致
+            int id = childIndex.add(tempRect.left, tempRect.top, tempRect.right, tempRect.bottom);
+            indexedChildren[id] = child;
+            if (child instanceof DragLayout) {
+                ((DragLayout) child).coordinatorId = id;
+                ((DragLayout) child).isCoordinatorMoved = false;
+            } else {
+                plainChildIds.put(child, id);
+            }
+        }
+        indexedCount = childCount;
+        movedCount = 0;
+        isIndexDirty = false;
+    }
+
+    /*child 绘制的范围，包括 translation、scale、rotation*/
+    private void getChildBounds(View child, RectF bounds) {
+        if (isTranslationOnly(child)) {
+            bounds.set(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+            bounds.offset(child.getTranslationX(), child.getTranslationY());
+            return;
+        }
+        bounds.set(0, 0, child.getWidth(), child.getHeight());
+        child.getMatrix().mapRect(bounds);
+        bounds.offset(child.getLeft(), child.getTop());
+    }
+}
@@ -0,0 +1,245 @@
+package com.biubiu.widget.layout;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+
+import java.util.Arrays;
+
+/**
+ * 一组一起拖拽的 DragLayout，拖拽其中任意一个，组内所有的 DragLayout 都会跟着移动。
+ * <p>
+ * 每个成员依旧遵守自己的{@link DragLayout.DragLimited}：不能拖拽的方向不移动；
+ * 只要有一个成员到达了 INSIDE_PARENT 的边界或者被自己的{@link DragLayout.DragConstraint}挡住，
+ * 整个组在这个方向上就停下来，组内的相对位置保持不变。
+ * <p>
+ * 开始拖拽时把所有成员的位置和范围记录到基本类型数组中，拖拽过程中只累加位移，
+ * 每一帧用一次遍历计算出整个组允许的位移，再统一应用到所有成员上。
+ */
+public class DragGroup {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private DragLayout[] members = new DragLayout[DEFAULT_CAPACITY];
+    private int memberCount;
+
+    // 开始拖拽时记录的成员状态，下标和 members 一致
+    private float[] xs = new float[DEFAULT_CAPACITY];
+    private float[] ys = new float[DEFAULT_CAPACITY];
+    private float[] minXs = new float[DEFAULT_CAPACITY];
+    private float[] maxXs = new float[DEFAULT_CAPACITY];
+    private float[] minYs = new float[DEFAULT_CAPACITY];
+    private float[] maxYs = new float[DEFAULT_CAPACITY];
+    private boolean[] horizontals = new boolean[DEFAULT_CAPACITY];
+    private boolean[] verticals = new boolean[DEFAULT_CAPACITY];
+
+    // 正在被拖拽的成员
+    private DragLayout leader;
+    private float pendingDX;
+    private float pendingDY;
+    private boolean isApplyPending;
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingMove();
+        }
+    };
+
+    /**
+     * 添加成员，一个 DragLayout 同一时间只能属于一个组，已经在其他组中的会先从那个组中移除
+     */
+    public void add(@NonNull DragLayout member) {
+        if (member.getDragGroup() == this) {
+            return;
+        }
+        if (member.getDragGroup() != null) {
+            member.getDragGroup().remove(member);
+        }
+        ensureCapacity(memberCount + 1);
+        members[memberCount] = member;
+        member.setDragGroupInternal(this);
+        if (leader != null) {
+            // 拖拽过程中加入的成员，从当前位置开始跟随
+            member.stopMovement();
+            snapshot(memberCount);
+        }
+        memberCount++;
+    }
+
+    public void remove(@NonNull DragLayout member) {
+        for (int i = 0; i < memberCount; i++) {
+            if (members[i] == member) {
+                if (member == leader) {
+                    end(member);
+                }
+                int moved = memberCount - i - 1;
+                System.arraycopy(members, i + 1, members, i, moved);
+                System.arraycopy(xs, i + 1, xs, i, moved);
+                System.arraycopy(ys, i + 1, ys, i, moved);
+                System.arraycopy(minXs, i + 1, minXs, i, moved);
+                System.arraycopy(maxXs, i + 1, maxXs, i, moved);
+                System.arraycopy(minYs, i + 1, minYs, i, moved);
+                System.arraycopy(maxYs, i + 1, maxYs, i, moved);
+                System.arraycopy(horizontals, i + 1, horizontals, i, moved);
+                System.arraycopy(verticals, i + 1, verticals, i, moved);
+                members[--memberCount] = null;
+                member.setDragGroupInternal(null);
+                return;
+            }
+        }
+    }
+
+    public void clear() {
+        if (leader != null) {
+            end(leader);
+        }
+        for (int i = 0; i < memberCount; i++) {
+            members[i].setDragGroupInternal(null);
+            members[i] = null;
+        }
+        memberCount = 0;
+    }
+
+    public boolean contains(DragLayout member) {
+        return member != null && member.getDragGroup() == this;
+    }
+
+    public int size() {
+        return memberCount;
+    }
+
+    /*某个成员开始拖拽，记录所有成员的位置和范围*/
+    void begin(DragLayout leader) {
+        this.leader = leader;
+        pendingDX = 0;
+        pendingDY = 0;
+        isApplyPending = false;
+        for (int i = 0; i < memberCount; i++) {
+            if (members[i] != leader) {
+                members[i].stopMovement();
+                // leader 自己的约束由 leader 通知
+                DragLayout.DragConstraint constraint = members[i].getDragConstraint();
+                if (constraint != null) {
+                    constraint.onDragStart(members[i]);
+                }
+            }
+            snapshot(i);
+        }
+    }
+
+    /*记录第 i 个成员的位置和范围*/
+    private void snapshot(int i) {
+        DragLayout member = members[i];
+        float x = member.getDragX();
+        float y = member.getDragY();
+        xs[i] = x;
+        ys[i] = y;
+        // 已经在范围之外的成员，允许它停在原地
+        minXs[i] = Math.min(member.getMinDragX(), x);
+        maxXs[i] = Math.max(member.getMaxDragX(), x);
+        minYs[i] = Math.min(member.getMinDragY(), y);
+        maxYs[i] = Math.max(member.getMaxDragY(), y);
+        horizontals[i] = member.isDragHorizontal();
+        verticals[i] = member.isDragVertical();
+    }
+
+    /*拖拽的位移，等到下一帧再统一应用*/
+    void moveBy(DragLayout leader, float dX, float dY) {
+        if (leader != this.leader) {
+            return;
+        }
+        pendingDX += dX;
+        pendingDY += dY;
+        if (!isApplyPending) {
+            isApplyPending = true;
+            ViewCompat.postOnAnimation(leader, applyRunnable);
+        }
+    }
+
+    /*拖拽结束，还没应用的位移立即应用*/
+    void end(DragLayout leader) {
+        if (leader != this.leader) {
+            return;
+        }
+        applyPendingMove();
+        this.leader = null;
+        for (int i = 0; i < memberCount; i++) {
+            if (members[i] != leader) {
+                members[i].commitPosition();
+            }
+        }
+    }
+
+    private void applyPendingMove() {
+        if (!isApplyPending || leader == null) {
+            return;
+        }
+        isApplyPending = false;
+        leader.removeCallbacks(applyRunnable);
+
+        // 第一遍：计算所有成员都能接受的位移范围
+        float minDX = -Float.MAX_VALUE;
+        float maxDX = Float.MAX_VALUE;
+        float minDY = -Float.MAX_VALUE;
+        float maxDY = Float.MAX_VALUE;
+        for (int i = 0; i < memberCount; i++) {
+            if (horizontals[i]) {
+                minDX = Math.max(minDX, minXs[i] - xs[i]);
+                maxDX = Math.min(maxDX, maxXs[i] - xs[i]);
+            }
+            if (verticals[i]) {
+                minDY = Math.max(minDY, minYs[i] - ys[i]);
+                maxDY = Math.min(maxDY, maxYs[i] - ys[i]);
+            }
+        }
+        float dX = Math.max(minDX, Math.min(pendingDX, maxDX));
+        float dY = Math.max(minDY, Math.min(pendingDY, maxDY));
+        pendingDX = 0;
+        pendingDY = 0;
+
+        // 第二遍：每个成员的约束都只会缩短位移，依次缩短之后所有成员都能接受；和单独拖拽一样先水平再垂直
+        for (int i = 0; i < memberCount && dX != 0; i++) {
+            DragLayout.DragConstraint constraint = members[i].getDragConstraint();
+            if (constraint != null && horizontals[i]) {
+                dX = constraint.constrainX(members[i], xs[i], ys[i], xs[i] + dX) - xs[i];
+            }
+        }
+        for (int i = 0; i < memberCount && dY != 0; i++) {
+            DragLayout.DragConstraint constraint = members[i].getDragConstraint();
+            if (constraint != null && verticals[i]) {
+                float x = horizontals[i] ? xs[i] + dX : xs[i];
+                dY = constraint.constrainY(members[i], x, ys[i], ys[i] + dY) - ys[i];
+            }
+        }
+        if (dX == 0 && dY == 0) {
+            return;
+        }
+
+        // 第三遍：应用到所有成员上
+        for (int i = 0; i < memberCount; i++) {
+            if (horizontals[i]) {
+                xs[i] += dX;
+            }
+            if (verticals[i]) {
+                ys[i] += dY;
+            }
+            members[i].applyPosition(xs[i], ys[i]);
+        }
+        leader.onGroupMoved();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= members.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, members.length * 2);
+        members = Arrays.copyOf(members, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        minXs = Arrays.copyOf(minXs, newCapacity);
+        maxXs = Arrays.copyOf(maxXs, newCapacity);
+        minYs = Arrays.copyOf(minYs, newCapacity);
+        maxYs = Arrays.copyOf(maxYs, newCapacity);
+        horizontals = Arrays.copyOf(horizontals, newCapacity);
+        verticals = Arrays.copyOf(verticals, newCapacity);
+    }
+}
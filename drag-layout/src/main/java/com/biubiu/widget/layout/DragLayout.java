@@ -2,22 +2,28 @@ package com.biubiu.widget.layout;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.graphics.PointF;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.Pair;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+import android.widget.OverScroller;
 import android.widget.RelativeLayout;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.annotation.UiThread;
+import androidx.core.view.ViewCompat;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * 一个可以拖拽的layout，RelativeLayout。
@@ -32,6 +38,105 @@ public class DragLayout extends RelativeLayout {
         void onDragEnd(View view);
     }
 
+    /**
+     * 需要知道惯性滑动开始和结束的时候，实现这个接口并通过{@link #setOnDragListener(OnDragListener)}设置。
+     * 惯性滑动在{@link #onDragEnd(View)}之后开始。
+     */
+    public interface OnDragFlingListener extends OnDragListener {
+        /**
+         * @param velocityX 水平方向的速度，单位 px/s
+         * @param velocityY 垂直方向的速度，单位 px/s
+         */
+        void onFlingStart(View view, float velocityX, float velocityY);
+
+        /*惯性滑动停止，包括被新的触摸打断*/
+        void onFlingEnd(View view);
+    }
+
+    /**
+     * 拖拽过程中的位置变化，通过{@link #setOnDragMoveListener(OnDragMoveListener)}设置，
+     * 回调的频率由{@link #setDragMoveDelivery(int)}决定。参数都是基本类型，回调中不应该有耗时操作。
+     */
+    public interface OnDragMoveListener {
+        /**
+         * @param x         当前的位置，和{@link View#getX()}的含义相同；开启了拖拽代理时是代理的位置
+         * @param y         当前的位置，和{@link View#getY()}的含义相同
+         * @param dx        和上一次回调相比水平方向移动的距离
+         * @param dy        和上一次回调相比垂直方向移动的距离
+         * @param eventTime 最近一个引起移动的事件的时间，和{@link MotionEvent#getEventTime()}是同一个时间基准
+         */
+        void onDragMove(View view, float x, float y, float dx, float dy, long eventTime);
+    }
+
+    /**
+     * 拖拽的约束，在{@link DragLimited}之后生效，用来实现障碍物之类的限制，参见{@link ObstacleConstraint}。
+     * 坐标和{@link #setX(float)}、{@link #setY(float)}的含义相同。
+     * 每次移动都会调用，实现中不应该有分配。
+     */
+    public interface DragConstraint {
+        /*开始拖拽，可以在这里更新约束用到的数据*/
+        void onDragStart(View view);
+
+        /**
+         * 限制水平方向的移动
+         *
+         * @param x   当前的 x
+         * @param y   当前的 y
+         * @param toX 想要移动到的 x，已经满足{@link DragLimited}
+         * @return 实际移动到的 x
+         */
+        float constrainX(View view, float x, float y, float toX);
+
+        /**
+         * 限制垂直方向的移动，在{@link #constrainX(View, float, float, float)}之后调用，x 是水平方向移动之后的位置
+         *
+         * @return 实际移动到的 y
+         */
+        float constrainY(View view, float x, float y, float toY);
+    }
+
+    /**
+     * 移动 DragLayout 的方式，坐标和{@link #setX(float)}、{@link #setY(float)}的含义相同。
+     * 不同方式的开销可以通过{@link #setDragMetrics(DragMetrics)}统计，参见{@link DragMetrics#getMoveApplyNanos()}、
+     * {@link DragMetrics#getLayoutRequestCount()}、{@link DragMetrics#getLayoutCount()}。
+     */
+    public interface MovementStrategy {
+
+        /*修改 translation（setX、setY），默认的方式*/
+        MovementStrategy TRANSLATION = new MovementStrategies.Translation();
+
+        /*修改 left、top（offsetLeftAndRight、offsetTopAndBottom），父布局重新 layout 之后位置会恢复*/
+        MovementStrategy OFFSET = new MovementStrategies.Offset();
+
+        /*拖拽时修改 translation，提交时转移到 leftMargin、topMargin 上，父布局重新 layout 之后依然保留*/
+        MovementStrategy LAYOUT_PARAMS = new MovementStrategies.LayoutParams();
+
+        /*移动到指定的位置，每次移动都会调用*/
+        void moveTo(View view, float x, float y);
+
+        /*一次移动（拖拽、惯性滑动、动画）结束之后调用，用来提交最终的位置*/
+        void commit(View view);
+    }
+
+    /**
+     * 吸附锚点的回调，坐标和{@link #setX(float)}、{@link #setY(float)}的含义相同
+     */
+    public interface OnSnapListener {
+        /**
+         * 拖拽过程中，离当前位置最近的锚点发生了变化，可以用来做吸附预览
+         *
+         * @param anchor 锚点的 id，{@link #NO_ANCHOR} 表示附近没有锚点
+         * @param x      吸附之后的 x，没有锚点时为当前位置
+         * @param y      吸附之后的 y，没有锚点时为当前位置
+         */
+        void onSnapPreview(View view, int anchor, float x, float y);
+
+        /**
+         * 抬手之后开始吸附到锚点
+         */
+        void onSnap(View view, int anchor, float x, float y);
+    }
+
     /**
      * DragLayout 的拖拽范围。
      * INSIDE_PARENT = 0x000001;
@@ -63,29 +168,229 @@ public class DragLayout extends RelativeLayout {
     @Retention(RetentionPolicy.SOURCE)
     public @interface DragLimited {
 
-        int INSIDE_PARENT = 1;//  不能超过其父布局
+        int INSIDE_PARENT = DragCore.INSIDE_PARENT;//  不能超过其父布局
+
+        int HORIZONTAL = DragCore.HORIZONTAL;// 水平方向移动
+
+        int VERTICAL = DragCore.VERTICAL;// 垂直方向移动
 
-        int HORIZONTAL = 1 << 1;// 水平方向移动
+        int WITHOUT_LIMITED = DragCore.WITHOUT_LIMITED;//  无限制
+    }
+
+    /**
+     * 拖拽时预测手指位置的方式，用来减小组件落后于手指的距离。
+     * NONE：不预测，直接使用当前事件的位置；
+     * LINEAR：用最近两个采样点的速度外推；
+     * LEAST_SQUARES：用最近 100ms 内的采样点（包括 historical 采样点）拟合速度再外推，更平滑。
+     */
+    @IntDef({PredictionMode.NONE,
+            PredictionMode.LINEAR,
+            PredictionMode.LEAST_SQUARES})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface PredictionMode {
+
+        int NONE = 0;// 不预测
+
+        int LINEAR = 1;// 两点线性外推
+
+        int LEAST_SQUARES = 2;// 最小二乘拟合后外推
+    }
+
+    /**
+     * {@link OnDragMoveListener}的回调频率。
+     * EVERY_MOVE：每次移动都回调，开启了{@link #setFrameCoalescingEnable(boolean)}时每帧最多移动一次；
+     * PER_FRAME：同一帧内的移动合并成一次，在下一帧回调；
+     * THROTTLE_TIME：距离上一次回调超过{@link #setDragMoveInterval(float)}毫秒才回调；
+     * THROTTLE_DISTANCE：距离上一次回调移动超过{@link #setDragMoveInterval(float)}像素才回调。
+     * 除了 EVERY_MOVE，跳过的移动会累加到下一次回调的 dx、dy 中，拖拽结束之前最后的位置一定会回调。
+     */
+    @IntDef({MoveDelivery.EVERY_MOVE,
+            MoveDelivery.PER_FRAME,
+            MoveDelivery.THROTTLE_TIME,
+            MoveDelivery.THROTTLE_DISTANCE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface MoveDelivery {
+
+        int EVERY_MOVE = 0;// 每次移动
 
-        int VERTICAL = 1 << 2;// 垂直方向移动
+        int PER_FRAME = 1;// 每帧一次
 
-        int WITHOUT_LIMITED = 1 << 3;//  无限制
+        int THROTTLE_TIME = 2;// 按时间间隔
+
+        int THROTTLE_DISTANCE = 3;// 按移动距离
     }
 
     public final int DRAG_LIMITED_ILLEGAL = DragLimited.INSIDE_PARENT | DragLimited.WITHOUT_LIMITED;
 
-    private int dragLimited = DragLimited.INSIDE_PARENT;
+    // 拖拽状态、touch slop、可拖拽的方向和范围限制都交给不依赖 Android 的 DragCore
+    private final DragCore dragCore = new DragCore();
     private boolean dragEnable;
 
-    private int touchSlop;
-
-    private float downX;
-    private float downY;
-    private float moveX;
-    private float moveY;
+    private int minimumFlingVelocity;
+    private int maximumFlingVelocity;
 
     private OnDragListener onDragListener;
 
+    // INSIDE_PARENT 时的拖拽范围保存在 dragCore 中，只在父布局或自己的尺寸变化之后重新计算
+    private boolean isParentBoundsDirty = true;
+    private View observedParent;
+
+    // 惯性滑动相关，VelocityTracker 和 OverScroller 都只创建一次，多次手势之间复用
+    private boolean flingEnable;
+    private boolean isFlinging;
+    private VelocityTracker velocityTracker;
+    private OverScroller flingScroller;
+    private final Runnable flingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            computeFling();
+        }
+    };
+
+    // 位置动画，两个方向在同一个帧回调里计算
+    public static final float DEFAULT_SPRING_STIFFNESS = 1500f;
+    public static final float DEFAULT_SPRING_DAMPING_RATIO = 1f;
+    private final DragSpring dragSpring = new DragSpring();
+    private final Runnable springRunnable = new Runnable() {
+        @Override
+        public void run() {
+            computeSpring();
+        }
+    };
+
+    // 吸附锚点，用网格索引，拖拽过程中也可以快速找到最近的锚点
+    public static final int NO_ANCHOR = -1;
+    // 锚点网格的格子大小，单位 dp
+    private static final float SNAP_CELL_SIZE = 48;
+    private SpatialGrid snapAnchors;
+    private float snapDistance = Float.MAX_VALUE;
+    // 拖拽过程中离当前位置最近的锚点，以及吸附之后的位置
+    private int snapAnchor = NO_ANCHOR;
+    private float snapX;
+    private float snapY;
+    private OnSnapListener onSnapListener;
+
+    private DropZoneRegistry dropZoneRegistry;
+
+    private DragGroup dragGroup;
+    private DragConstraint dragConstraint;
+
+    // 拖拽移动的回调，以及上一次回调时的位置和时间
+    private OnDragMoveListener onDragMoveListener;
+    private int dragMoveDelivery = MoveDelivery.EVERY_MOVE;
+    private float dragMoveInterval;
+    private float deliveredX;
+    private float deliveredY;
+    private long deliveredTime;
+    private long dragMoveEventTime;
+    private boolean isDragMovePending;
+    private final Runnable dragMoveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isDragMovePending = false;
+            deliverDragMove();
+        }
+    };
+
+    // 性能统计，为 null 时不统计
+    private DragMetrics dragMetrics;
+    private GestureTraceRecorder gestureTraceRecorder;
+    private boolean isMetricsFramePending;
+    private long metricsEventTime;
+    private final Runnable metricsFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isMetricsFramePending = false;
+            if (dragMetrics != null) {
+                dragMetrics.onFrame(SystemClock.uptimeMillis() - metricsEventTime);
+            }
+        }
+    };
+
+    // 拖拽代理，isProxyDragging 时移动的是代理而不是自己
+    private boolean dragProxyEnable;
+    private boolean isProxyDragging;
+    private DragProxy dragProxy;
+
+    // 移动的方式
+    private MovementStrategy movementStrategy = MovementStrategy.TRANSLATION;
+    // 最近一次移动想要到达的位置，以及移动之后实际的位置。
+    // OFFSET 只能移动整像素，下一次移动从想要到达的位置继续算，慢速拖拽时不足一个像素的位移不会被丢掉；
+    // 位置被其他途径改变（比如重新 layout）之后实际的位置对不上，以实际的位置为准
+    private float intendedX;
+    private float intendedY;
+    private float appliedX;
+    private float appliedY;
+    // 拖拽已经结束，还在惯性滑动或者吸附，停稳之后通知 DragCoordinator
+    private boolean isSettlePending;
+
+    // 拖拽到可滚动祖先的边缘时自动滚动，边缘的宽度单位 dp，最大速度单位 dp/s
+    public static final float DEFAULT_AUTO_SCROLL_EDGE = 48;
+    public static final float DEFAULT_AUTO_SCROLL_MAX_SPEED = 1500;
+    // 手指移动的速度超过这个值时只需要一半的 touch slop 就开始拖拽，单位 dp/s，点击时的抖动远远达不到
+    private static final float FAST_DRAG_VELOCITY = 1000;
+    // 两帧之间的时间最多按这么长计算，单位 ms，避免卡顿之后一下滚动很远
+    private static final long MAX_AUTO_SCROLL_FRAME_TIME = 50;
+    private boolean autoScrollEnable;
+    private float autoScrollEdge;
+    private float autoScrollMaxSpeed;
+    private View autoScrollTarget;
+    private boolean isNestedAutoScroll;
+    private boolean isAutoScrollPending;
+    private boolean isParentInterceptDisallowed;
+    private long autoScrollFrameTime;
+    // 不足 1px 的滚动距离累积到下一帧
+    private float autoScrollRemainderX;
+    private float autoScrollRemainderY;
+    private final int[] autoScrollLocation = new int[2];
+    private final Runnable autoScrollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isAutoScrollPending = false;
+            computeAutoScroll();
+        }
+    };
+
+    // 位置的持久化，以及等待在第一次绘制之前恢复的位置
+    private DragPositionStore positionStore;
+    private String positionKey;
+    private boolean isPositionRestorePending;
+    // detach 时还没有恢复，listener 已经从窗口的 ViewTreeObserver 上移除，等 attach 之后重新安排
+    private boolean isPositionRestoreDeferred;
+    private boolean hasRestoredPosition;
+    private float restoredX;
+    private float restoredY;
+    private final ViewTreeObserver.OnPreDrawListener restorePositionListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            getViewTreeObserver().removeOnPreDrawListener(this);
+            restorePosition();
+            return true;
+        }
+    };
+
+    // 父布局是 DragCoordinator 时，自己在它的索引中的 id，以及位置是否变化过还没有更新到索引中
+    int coordinatorId = -1;
+    boolean isCoordinatorMoved;
+
+    // 默认的预测时间长度，单位 ms
+    public static final long DEFAULT_PREDICTION_HORIZON = 16;
+    private final DragPredictor dragPredictor = new DragPredictor();
+
+    // 按帧合并位移相关的状态
+    private boolean frameCoalescing;
+    private boolean isMovePending;
+    private float pendingDX;
+    private float pendingDY;
+    private int pendingEventCount;
+    private int coalescedEventCount;
+    private final Runnable applyPendingMoveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingMove();
+        }
+    };
+
     public DragLayout(@NonNull Context context) {
         this(context, null);
     }
@@ -100,9 +405,19 @@ public class DragLayout extends RelativeLayout {
     }
 
     private void init() {
-        touchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+        ViewConfiguration configuration = ViewConfiguration.get(getContext());
+        minimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        dragCore.setTouchSlop(configuration.getScaledTouchSlop());
+        maximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
         setDragLimited(DragLimited.INSIDE_PARENT);
         setDragEnable(true);
+        setPredictionHorizon(DEFAULT_PREDICTION_HORIZON);
+        setSpringStiffness(DEFAULT_SPRING_STIFFNESS);
+        setSpringDampingRatio(DEFAULT_SPRING_DAMPING_RATIO);
+        float density = getResources().getDisplayMetrics().density;
+        dragCore.setFastDragVelocity(FAST_DRAG_VELOCITY * density);
+        autoScrollEdge = DEFAULT_AUTO_SCROLL_EDGE * density;
+        autoScrollMaxSpeed = DEFAULT_AUTO_SCROLL_MAX_SPEED * density;
     }
 
     public void setOnDragListener(OnDragListener onDragListener) {
@@ -117,11 +432,10 @@ public class DragLayout extends RelativeLayout {
     public void setDragEnable(boolean dragEnable) {
         this.dragEnable = dragEnable;
 
-        // 如果是不允许拖拽了，那么缓存的motionEvent清空
+        // 如果是不允许拖拽了，那么结束正在进行的拖拽，取消回放，缓存的motionEvent清空
         if (!dragEnable) {
-            motionEventsCache.clear();
-            // 结束处理缓存的标记值
-            isProcessingCache = false;
+            abortDrag();
+            cancelGesture();
         }
     }
 
@@ -130,256 +444,1683 @@ public class DragLayout extends RelativeLayout {
     }
 
     /**
-     * 设置 Drag 的范围
-     * 支持类似于 INSIDE_PARENT | ALIGN_TOP 的这种“或”操作
+     * 是否按帧合并拖拽时的位移。
+     * 开启之后，一帧之内的多个 ACTION_MOVE 只会累加位移，在下一次绘制之前统一应用一次，
+     * 适合触摸采样率远高于屏幕刷新率的设备。默认关闭。
      *
-     * @param limited 合法输入参见{@link DragLimited}
+     * @param frameCoalescing true or false
      */
-    public void setDragLimited(int limited) {
-        if ((limited & DRAG_LIMITED_ILLEGAL) == DRAG_LIMITED_ILLEGAL) {
-            throw new RuntimeException("检测到 setDragLimited() 输入了非法的类型！不能同时应用 INSIDE_PARENT 和 WITHOUT_LIMITED");
+    public void setFrameCoalescingEnable(boolean frameCoalescing) {
+        this.frameCoalescing = frameCoalescing;
+        // 关闭的时候把还没应用的位移立即应用掉
+        if (!frameCoalescing) {
+            applyPendingMove();
         }
-        dragLimited = limited;
     }
 
+    public boolean isFrameCoalescingEnable() {
+        return frameCoalescing;
+    }
 
-    // drag的状态，用于事件通知
-    private int dragState = DRAG_END;
-    private final static int DRAG_START = 1;
-    private final static int DRAG_END = 2;
-
-    // 如果在抬起的时候并没有触发drag事件，那么需要重新分发之前的操作给child。
-    // 因此需要提前存储所有的MotionEvent事件。
-    // 再由于多个MotionEvent所触发的事件和时间有关系（例如LongClick的判断），因此还需要存储每次Event的时间信息。
-    private final List<Pair<Long, MotionEvent>> motionEventsCache = new ArrayList<>();
-    private boolean isProcessingCache = false;
-
-    @Override
-    public boolean onInterceptTouchEvent(MotionEvent event) {
-        // 如果不允许拖拽，那就直接交给child处理
-        // 如果正在处理Cache的Event，则返回false，直接交给child处理
-        if (!dragEnable || isProcessingCache) {
-            return false;
+    /**
+     * 抬手之后是否根据拖拽的速度继续惯性滑动，惯性滑动同样遵守{@link DragLimited}的限制。默认关闭。
+     * 惯性滑动的开始和结束可以通过{@link OnDragFlingListener}获取。
+     *
+     * @param flingEnable true or false
+     */
+    public void setFlingEnable(boolean flingEnable) {
+        this.flingEnable = flingEnable;
+        if (!flingEnable) {
+            stopFling();
         }
-        // 记录 motionEvent cache
-        motionEventsCache.add(new Pair<>(System.currentTimeMillis(), MotionEvent.obtain(event)));
+    }
 
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_DOWN:
-                downX = moveX = event.getRawX();
-                downY = moveY = event.getRawY();
-                postDelayed(new CheckLongClick(), ViewConfiguration.getLongPressTimeout());
-                break;
-            case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_CANCEL:
-                moveX = event.getRawX();
-                moveY = event.getRawY();
-                if (dragState == DRAG_END) {
-                    // 抬手的瞬间，如果发现并没有触发drag事件的话，则将cache住的所有event抛给下层处理
-                    // 分发cache event
-                    dispatchMotionEventCache();
-                    return false;
-                }
-                motionEventsCache.clear();
-                break;
+    public boolean isFlingEnable() {
+        return flingEnable;
+    }
+
+    /**
+     * 用弹簧动画移动到指定的位置，x、y 和{@link #setX(float)}、{@link #setY(float)}的含义相同。
+     * 目标位置同样遵守{@link DragLimited}的限制：超出父布局的部分会被限制在父布局内，不能拖拽的方向保持不动。
+     * 动画进行中再次调用会保留当前速度平滑地转向新的目标；新的触摸会让动画停在当前位置。
+     */
+    public void animateTo(float x, float y) {
+        stopFling();
+        float targetX = isDragHorizontal() ? clampX(x) : getX();
+        float targetY = isDragVertical() ? clampY(y) : getY();
+        dragSpring.start(getX(), getY(), targetX, targetY, AnimationUtils.currentAnimationTimeMillis());
+        removeCallbacks(springRunnable);
+        ViewCompat.postOnAnimation(this, springRunnable);
+    }
 
+    /**
+     * 如果当前位置超出了{@link DragLimited}允许的范围（比如父布局尺寸变化之后），用动画移回范围内。
+     */
+    public void settle() {
+        float x = getX();
+        float y = getY();
+        float targetX = clampX(x);
+        float targetY = clampY(y);
+        if (targetX != x || targetY != y) {
+            animateTo(targetX, targetY);
         }
-        return true;// 如果没有触发拖动事件，就返回false，把event交给child处理
     }
 
-    /*分发缓存的MotionEvents*/
-    private void dispatchMotionEventCache() {
-        if (motionEventsCache.size() > 0) {
-            // 开始处理缓存的标记值
-            isProcessingCache = true;
-            // 获取第一个缓存Event的时间，用于后续的postDelayed操作
-            Pair<Long, MotionEvent> head = motionEventsCache.get(0);
-            long headTime = head.first;
-            // 获取触发长按所需要的时间
-            long longPressTimeout = ViewConfiguration.getLongPressTimeout();
-            longPressTimeout = longPressTimeout >= 500 ? longPressTimeout : 500;
-            // 遍历分发缓存的MotionEvents
-            for (Pair<Long, MotionEvent> eventPair : motionEventsCache) {
-                long curTime = eventPair.first;
-                long dTime = curTime - headTime;
-                // 大于长按触发时间的按照长按时间处理，避免过度延时导致的问题
-                dTime = Math.min(dTime, longPressTimeout);
-                postDelayed(new DispatchMotionEvent(eventPair), dTime);
-            }
+    /**
+     * 停止{@link #animateTo(float, float)}的动画，停在当前位置
+     */
+    public void stopAnimation() {
+        if (dragSpring.isRunning()) {
+            dragSpring.stop();
+            removeCallbacks(springRunnable);
+            commitPosition();
         }
     }
 
-    /*用于dispatch缓存的MotionEvents*/
-    private class DispatchMotionEvent implements Runnable {
+    public boolean isAnimating() {
+        return dragSpring.isRunning();
+    }
+
+    /**
+     * 设置{@link #animateTo(float, float)}所用弹簧的刚度，越大越快，默认 {@value #DEFAULT_SPRING_STIFFNESS}
+     */
+    public void setSpringStiffness(float stiffness) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("弹簧的刚度必须大于 0");
+        }
+        dragSpring.setStiffness(stiffness);
+    }
 
-        private final Pair<Long, MotionEvent> eventPair;
+    public float getSpringStiffness() {
+        return dragSpring.getStiffness();
+    }
 
-        DispatchMotionEvent(Pair<Long, MotionEvent> eventPair) {
-            this.eventPair = eventPair;
+    /**
+     * 设置{@link #animateTo(float, float)}所用弹簧的阻尼比，小于 1 会有回弹，默认 {@value #DEFAULT_SPRING_DAMPING_RATIO}
+     */
+    public void setSpringDampingRatio(float dampingRatio) {
+        if (dampingRatio < 0) {
+            throw new IllegalArgumentException("弹簧的阻尼比不能小于 0");
         }
+        dragSpring.setDampingRatio(dampingRatio);
+    }
 
-        @UiThread
-        @Override
-        public void run() {
-            if (eventPair != null && eventPair.second != null) {
-                // 分发事件
-                dispatchTouchEvent(eventPair.second);
-                // 清除对应的cache信息
-                motionEventsCache.remove(eventPair);
-                if (motionEventsCache.isEmpty()) {
-                    // 结束处理缓存的标记值
-                    isProcessingCache = false;
-                }
-            }
+    public float getSpringDampingRatio() {
+        return dragSpring.getDampingRatio();
+    }
+
+    /**
+     * 添加一个吸附锚点，抬手之后会用{@link #animateTo(float, float)}吸附到{@link #setSnapDistance(float)}范围内最近的锚点。
+     * 锚点是 DragLayout 左上角的目标位置，和{@link #setX(float)}、{@link #setY(float)}的含义相同。
+     *
+     * @return 锚点的 id，用于{@link #removeSnapAnchor(int)}
+     */
+    public int addSnapAnchor(float x, float y) {
+        return addSnapRegion(x, y, x, y);
+    }
+
+    /**
+     * 添加一个吸附区域，吸附到区域中离当前位置最近的点，可以用来实现吸附到边缘之类的效果。
+     * 区域同样是 DragLayout 左上角可以到达的范围。
+     *
+     * @return 锚点的 id，用于{@link #removeSnapAnchor(int)}
+     */
+    public int addSnapRegion(float left, float top, float right, float bottom) {
+        if (snapAnchors == null) {
+            snapAnchors = new SpatialGrid(SNAP_CELL_SIZE * getResources().getDisplayMetrics().density);
         }
+        return snapAnchors.add(Math.min(left, right), Math.min(top, bottom),
+                Math.max(left, right), Math.max(top, bottom));
     }
 
-    // 检测是否需要下发长按事件
-    // 具体的检测方案就是检测到ActionDown之后
-    // postDelay一个CheckLongClick事件
-    // 如果该事件发生时，控件依旧是DragEnd状态且cache不为空，则dispatch事件
-    private class CheckLongClick implements Runnable {
+    public void removeSnapAnchor(int anchor) {
+        if (snapAnchors != null && snapAnchors.isAlive(anchor)) {
+            snapAnchors.remove(anchor);
+        }
+    }
 
-        @Override
-        public void run() {
-            if (dragState == DRAG_END && motionEventsCache.size() > 0) {
-                // 下发长按事件
-                isProcessingCache = true;
-                // 第一个缓存一定是ACTION_DOWN
-                dispatchTouchEvent(motionEventsCache.get(0).second);
-                // 已经dispatch的Event就在cache中移除掉
-                motionEventsCache.remove(0);
-                isProcessingCache = false;
-            }
+    public void clearSnapAnchors() {
+        if (snapAnchors != null) {
+            snapAnchors.clear();
         }
+        snapAnchor = NO_ANCHOR;
     }
 
-    @SuppressLint("ClickableViewAccessibility")
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        if (!dragEnable || isProcessingCache) {
-            return false;
+    /**
+     * 设置吸附的最大距离，超过这个距离的锚点不会吸附，默认不限制
+     *
+     * @param snapDistance 单位 px
+     */
+    public void setSnapDistance(float snapDistance) {
+        if (snapDistance < 0) {
+            throw new IllegalArgumentException("吸附距离不能小于 0");
         }
-        //  进入onTouchEvent就表明onInterceptTouchEvent返回的true，此时并没触发ActionUp。
-        //  因此需要在平移和回调的时候判断状态信息
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_MOVE:
-                // 如果不是第一个触屏点的事件，就不要进行后续的逻辑处理了，防止组件出现乱跳的情况
-                if (!isFirstPointer(event)) {
-                    return true;
-                }
+        this.snapDistance = snapDistance;
+    }
 
-                float curX = event.getRawX();
-                float curY = event.getRawY();
+    public float getSnapDistance() {
+        return snapDistance;
+    }
 
-                float dX = curX - moveX;
-                float dY = curY - moveY;
-                moveX = curX;
-                moveY = curY;
+    public void setOnSnapListener(OnSnapListener onSnapListener) {
+        this.onSnapListener = onSnapListener;
+    }
 
-                if (dragState == DRAG_END) {
-                    // 超过最小滑动距离，则认定为滑动事件
-                    if (Math.abs(moveX - downX) > touchSlop || Math.abs(moveY - downY) > touchSlop) {
-                        dragState = DRAG_START;
-                        if (onDragListener != null) {
-                            onDragListener.onDragStart(this);
-                        }
-                    }
-                }
+    /**
+     * 设置放置区域的注册表，拖拽过程中会回调进入、离开区域，抬手时回调放置
+     *
+     * @param dropZoneRegistry 可以被多个 DragLayout 共用，为 null 表示不检测
+     */
+    public void setDropZoneRegistry(DropZoneRegistry dropZoneRegistry) {
+        this.dropZoneRegistry = dropZoneRegistry;
+    }
 
-                if (dragState == DRAG_START) {
-                    setTargetX(dX);
-                    setTargetY(dY);
-                    return true;
-                }
-                break;
-            case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_CANCEL:
-                moveX = event.getRawX();
-                moveY = event.getRawY();
-                if (dragState == DRAG_START) {
-                    dragState = DRAG_END;
-                    if (onDragListener != null) {
-                        onDragListener.onDragEnd(this);
-                    }
-                    return true;
-                }
-                break;
-        }
-        return true;
+    public DropZoneRegistry getDropZoneRegistry() {
+        return dropZoneRegistry;
+    }
+
+    /**
+     * 开启拖拽代理：开始拖拽时把内容绘制到一张复用的 Bitmap 上，拖拽过程中只移动父布局 overlay 中的这张 Bitmap，
+     * 自己停在原地，抬手时再一次性移动到最终的位置。适合内容很复杂、重绘开销大的情况。
+     * 拖拽代理需要 API 18，更低的版本依旧直接移动自己；内容中有 HARDWARE Bitmap（API 26+）时无法用软件 Canvas 绘制，
+     * 同样直接移动自己。
+     * <p>
+     * 代理显示期间自己依旧可见，可以在{@link OnDragListener#onDragStart(View)}中修改透明度等作为占位。
+     */
+    public void setDragProxyEnable(boolean dragProxyEnable) {
+        this.dragProxyEnable = dragProxyEnable;
     }
 
-    /*是否为第一个触屏点的事件*/
-    private boolean isFirstPointer(MotionEvent event) {
-        int actionIndex = event.getActionIndex();
-        int pointerId = event.getPointerId(actionIndex);
-        return pointerId == 0;
+    public boolean isDragProxyEnable() {
+        return dragProxyEnable;
     }
 
-    @Override
-    public boolean dispatchTouchEvent(MotionEvent ev) {
-        if (onInterceptTouchEvent(ev)) {
-            // 直接拦截自己处理
-            return onTouchEvent(ev);
-        } else {
-            //  此处的事件都是cache事件，因为parent认为DragLayout已经处理过正常的事件了，
-            //  所以touch事件的处理只能让child响应，如果child需要执行，那就执行，如果不需要执行，也就结束了。
-            //  目前不支持child处理长按事件。
-            //  理论上，只有当前的dispatchTouchEvent不return，才能保证child不处理的时候将事件抛到上层，但是那样很难处理。
-            return super.dispatchTouchEvent(ev);
-        }
+    /**
+     * 释放拖拽代理缓存的 Bitmap，所有 DragLayout 共用这个缓存，内存紧张时可以调用
+     */
+    public static void clearDragProxyCache() {
+        DragProxy.clearPool();
     }
 
-    private void setTargetX(float dX) {
-        if (isDragHorizontal()) {
-            setX(getTargetX(dX));
-        }
+    /**
+     * 设置拖拽的约束，手指拖拽、惯性滑动、{@link #animateTo(float, float)}（包括吸附）的每一次移动都会经过约束，
+     * 惯性滑动和动画被约束挡住时停在碰到的位置
+     *
+     * @param dragConstraint 为 null 表示只有{@link DragLimited}的限制
+     */
+    public void setDragConstraint(DragConstraint dragConstraint) {
+        this.dragConstraint = dragConstraint;
     }
 
-    private void setTargetY(float dY) {
-        if (isDragVertical()) {
-            setY(getTargetY(dY));
-        }
+    public DragConstraint getDragConstraint() {
+        return dragConstraint;
+    }
+
+    /**
+     * 设置移动的方式，默认{@link MovementStrategy#TRANSLATION}
+     */
+    public void setMovementStrategy(@NonNull MovementStrategy movementStrategy) {
+        this.movementStrategy = movementStrategy;
+    }
+
+    @NonNull
+    public MovementStrategy getMovementStrategy() {
+        return movementStrategy;
     }
 
-    private float getTargetX(float dX) {
-        float x = getX() + dX;
-        if (isDragInsideParent()) {
-            float maxRight = getMaxRightInsideParent();
-            float minLeft = getMinLeftInsideParent();
-            x = Math.min(x, maxRight);
-            x = Math.max(x, minLeft);
+    /**
+     * 提交当前的位置，参见{@link MovementStrategy#commit(View)}。
+     * 拖拽、惯性滑动、动画结束之后会自动调用。
+     */
+    public void commitPosition() {
+        movementStrategy.commit(this);
+        if (positionStore != null) {
+            positionStore.put(positionKey, getX(), getY());
+        }
+        if (isSettlePending && !isFlinging && !isAnimating()) {
+            // 放下之后停稳了（包括惯性滑动、吸附被打断），DragCoordinator 以最终的位置重新排布
+            isSettlePending = false;
+            if (getParent() instanceof DragCoordinator) {
+                ((DragCoordinator) getParent()).onChildSettled(this);
+            }
         }
-        return x;
     }
 
-    private float getTargetY(float dY) {
-        float y = getY() + dY;
-        if (isDragInsideParent()) {
-            float maxBottom = getMaxBottomInsideParent();
-            float minTop = getMinTopInsideParent();
-            y = Math.min(y, maxBottom);
-            y = Math.max(y, minTop);
+    /**
+     * 所在的拖拽组，通过{@link DragGroup#add(DragLayout)}加入
+     */
+    public DragGroup getDragGroup() {
+        return dragGroup;
+    }
+
+    void setDragGroupInternal(DragGroup dragGroup) {
+        this.dragGroup = dragGroup;
+    }
+
+    /**
+     * 设置性能统计，参见{@link DragMetrics}
+     *
+     * @param dragMetrics 为 null 表示不统计，没有任何开销
+     */
+    public void setDragMetrics(DragMetrics dragMetrics) {
+        this.dragMetrics = dragMetrics;
+    }
+
+    public DragMetrics getDragMetrics() {
+        return dragMetrics;
+    }
+
+    /**
+     * 设置手势录制，参见{@link GestureTraceRecorder}
+     *
+     * @param gestureTraceRecorder 为 null 表示不录制
+     */
+    public void setGestureTraceRecorder(GestureTraceRecorder gestureTraceRecorder) {
+        this.gestureTraceRecorder = gestureTraceRecorder;
+    }
+
+    /**
+     * 设置位置的持久化：每次拖拽、惯性滑动、动画结束之后把位置保存到 store 中，
+     * 之后（包括进程重启之后）创建的 DragLayout 设置同样的 store 和 key，会在第一次绘制之前恢复到保存的位置，
+     * 不需要额外的 layout。
+     * <p>
+     * 配置变化（比如旋转屏幕）时不需要 store，设置了 id 的 DragLayout 会通过{@link #onSaveInstanceState()}保存位置，
+     * 两者都有时以 onSaveInstanceState 保存的位置为准。
+     *
+     * @param positionStore 为 null 表示不保存
+     * @param key           区分同一个 store 中的多个 DragLayout
+     */
+    public void setDragPositionStore(DragPositionStore positionStore, String key) {
+        if (positionStore != null && key == null) {
+            throw new IllegalArgumentException("使用 DragPositionStore 时 key 不能为 null");
         }
-        return y;
+        this.positionStore = positionStore;
+        this.positionKey = key;
+        if (positionStore != null) {
+            schedulePositionRestore();
+        }
+    }
+
+    public DragPositionStore getDragPositionStore() {
+        return positionStore;
+    }
+
+    public void setOnDragMoveListener(OnDragMoveListener onDragMoveListener) {
+        this.onDragMoveListener = onDragMoveListener;
+    }
+
+    /**
+     * 设置{@link OnDragMoveListener}的回调频率，默认{@link MoveDelivery#EVERY_MOVE}
+     *
+     * @param delivery 合法输入参见{@link MoveDelivery}
+     */
+    public void setDragMoveDelivery(@MoveDelivery int delivery) {
+        dragMoveDelivery = delivery;
+    }
+
+    @MoveDelivery
+    public int getDragMoveDelivery() {
+        return dragMoveDelivery;
+    }
+
+    /**
+     * 设置{@link MoveDelivery#THROTTLE_TIME}（单位 ms）和{@link MoveDelivery#THROTTLE_DISTANCE}（单位 px）的间隔
+     */
+    public void setDragMoveInterval(float interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("回调的间隔不能小于 0");
+        }
+        dragMoveInterval = interval;
+    }
+
+    public float getDragMoveInterval() {
+        return dragMoveInterval;
+    }
+
+    /**
+     * 开启自动滚动：在 ScrollView、RecyclerView 等可以滚动的祖先中拖拽时，手指靠近祖先的边缘，
+     * 祖先就会向这个方向滚动，越靠近边缘越快，同时自己跟着移动，保持在手指下方。
+     * 滚动由每一帧的回调驱动，手指停在边缘不动也会持续滚动。
+     * <p>
+     * 开启之后，手势确定之前不允许祖先拦截事件；只在不能拖拽的方向上移动时再交还给祖先，祖先依旧可以正常滚动。
+     * 如果通过{@link #setNestedScrollingEnabled(boolean)}开启了嵌套滚动，滚动距离交给嵌套滚动的父布局
+     * （比如 NestedScrollView、CoordinatorLayout）处理，否则直接调用祖先的{@link View#scrollBy(int, int)}。
+     */
+    public void setAutoScrollEnable(boolean autoScrollEnable) {
+        this.autoScrollEnable = autoScrollEnable;
+        if (!autoScrollEnable) {
+            endAutoScroll();
+        }
+    }
+
+    public boolean isAutoScrollEnable() {
+        return autoScrollEnable;
+    }
+
+    /**
+     * 设置触发自动滚动的边缘宽度，默认{@value #DEFAULT_AUTO_SCROLL_EDGE}dp
+     *
+     * @param edge 单位 px
+     */
+    public void setAutoScrollEdge(float edge) {
+        if (edge <= 0) {
+            throw new IllegalArgumentException("边缘宽度必须大于 0");
+        }
+        autoScrollEdge = edge;
+    }
+
+    public float getAutoScrollEdge() {
+        return autoScrollEdge;
+    }
+
+    /**
+     * 设置手指到达边缘时的滚动速度，默认{@value #DEFAULT_AUTO_SCROLL_MAX_SPEED}dp/s
+     *
+     * @param maxSpeed 单位 px/s
+     */
+    public void setAutoScrollMaxSpeed(float maxSpeed) {
+        if (maxSpeed <= 0) {
+            throw new IllegalArgumentException("滚动速度必须大于 0");
+        }
+        autoScrollMaxSpeed = maxSpeed;
+    }
+
+    public float getAutoScrollMaxSpeed() {
+        return autoScrollMaxSpeed;
+    }
+
+    /**
+     * 设置拖拽时预测手指位置的方式
+     *
+     * @param mode 合法输入参见{@link PredictionMode}
+     */
+    public void setPredictionMode(@PredictionMode int mode) {
+        dragPredictor.setMode(mode);
+    }
+
+    @PredictionMode
+    public int getPredictionMode() {
+        return dragPredictor.getMode();
+    }
+
+    /**
+     * 设置预测的时间长度，一般设置为一帧左右，默认 {@value #DEFAULT_PREDICTION_HORIZON} ms
+     *
+     * @param horizon 单位 ms
+     */
+    public void setPredictionHorizon(long horizon) {
+        if (horizon < 0) {
+            throw new IllegalArgumentException("预测的时间长度不能小于 0");
+        }
+        dragPredictor.setHorizon(horizon);
+    }
+
+    public long getPredictionHorizon() {
+        return dragPredictor.getHorizon();
+    }
+
+    /**
+     * 上一次预测的位置和实际到达的位置之间的距离，单位 px，用于调整预测参数。
+     */
+    public float getPredictionError() {
+        return dragPredictor.getLastError();
+    }
+
+    /**
+     * 预测误差的平滑平均值，单位 px。
+     */
+    public float getAveragePredictionError() {
+        return dragPredictor.getAverageError();
+    }
+
+    /**
+     * 最近一次应用位移的那一帧合并了多少个 ACTION_MOVE。
+     * 没有开启{@link #setFrameCoalescingEnable(boolean)}的时候每次都是 1。
+     */
+    public int getCoalescedEventCount() {
+        return coalescedEventCount;
+    }
+
+    /**
+     * 设置 Drag 的范围
+     * 支持类似于 INSIDE_PARENT | ALIGN_TOP 的这种“或”操作
+     *
+     * @param limited 合法输入参见{@link DragLimited}
+     */
+    public void setDragLimited(int limited) {
+        dragCore.setDragLimited(limited);
+    }
+
+
+    // drag的状态，用于事件通知
+
+    // 手势的分类，用于决定事件交给谁处理
+    // 还不确定是拖拽还是 child 的手势，事件先缓存起来
+    private final static int GESTURE_UNDECIDED = 0;
+    // 按住超过了 tap timeout，事件交给 child，但依旧可以开始拖拽
+    private final static int GESTURE_PRESS = 1;
+    // 确定不会拖拽（点击、只在不能拖拽的方向上移动），事件直接交给 child
+    private final static int GESTURE_CHILD = 2;
+    private int gestureState = GESTURE_UNDECIDED;
+
+    // 跟随的手指，ACTION_DOWN 时是第一根手指，它抬起时换成剩下的手指中的一根
+    private int activePointerId = MotionEvent.INVALID_POINTER_ID;
+    // 每个事件开始处理时查找一次，之后的处理都用这几个值，不再重复查找
+    private int activePointerIndex;
+    // 跟随的手指的屏幕坐标，拖拽过程中自身的移动不会影响它
+    private float activeRawX;
+    private float activeRawY;
+
+    // 还没有确定手势之前，需要先把事件缓存起来，确定不是拖拽之后再立即分发给child。
+    // 事件以基本类型数组的形式记录，分发时才重建MotionEvent，避免每个事件都拷贝一份。
+    private final MotionEventLog motionEventsCache = new MotionEventLog();
+    // 正在把事件交给child，此时 onInterceptTouchEvent 和 onTouchEvent 都不处理
+    private boolean isProcessingCache = false;
+    private final CheckPress checkPress = new CheckPress();
+    // 最近一次点击从抬手到 child 收到抬手事件的延迟，单位 ms
+    private long tapLatency;
+
+    /*还没有交给child的缓存事件个数*/
+    int getMotionEventCacheSize() {
+        return motionEventsCache.size();
+    }
+
+    /**
+     * 最近一次点击从抬手事件产生到 child 收到抬手事件的延迟，单位 ms。
+     * 点击在抬手时就被识别出来，缓存的事件会立即交给 child，正常情况下是 0。
+     */
+    public long getTapLatency() {
+        return tapLatency;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        // 如果不允许拖拽，那就直接交给child处理
+        // 如果正在把事件交给child，则返回false，直接交给child处理
+        if (!dragEnable || isProcessingCache) {
+            return false;
+        }
+        // 记录 motionEvent cache，已经开始拖拽的话就不需要再分发给child了，也就不用记录
+        if (!dragCore.isDragging()) {
+            motionEventsCache.add(event);
+            if (dragMetrics != null) {
+                dragMetrics.onCacheSize(motionEventsCache.size());
+            }
+        }
+        if (flingEnable) {
+            trackVelocity(event);
+        }
+
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                // 新的触摸打断惯性滑动和动画，停在当前的位置
+                stopFling();
+                stopAnimation();
+                dragCore.down(activeRawX, activeRawY, event.getEventTime());
+                dragPredictor.reset();
+                dragPredictor.addSample(event.getEventTime(), activeRawX, activeRawY);
+                // 同一时间只会有一个按下检测在等待
+                removeCallbacks(checkPress);
+                postDelayed(checkPress, ViewConfiguration.getTapTimeout());
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                // 手势已经结束，不需要再检测按下了
+                removeCallbacks(checkPress);
+                // 拖拽中的抬手交给 onTouchEvent，那里要用最后一次预测的位置修正到手指实际的位置
+                if (!dragCore.isDragging()) {
+                    dragCore.moveTo(activeRawX, activeRawY);
+                    if (event.getAction() == MotionEvent.ACTION_UP) {
+                        // 在超过 tap timeout 之前抬手，是一次点击，cache住的所有event立即交给child
+                        flushMotionEventCache();
+                        tapLatency = SystemClock.uptimeMillis() - event.getEventTime();
+                    } else {
+                        // child 还没有收到过任何事件，也就不需要收到 ACTION_CANCEL
+                        motionEventsCache.clear();
+                    }
+                    return false;
+                }
+                motionEventsCache.clear();
+                break;
+
+        }
+        return true;// 如果没有触发拖动事件，就返回false，把event交给child处理
+    }
+
+    /*立即把缓存的MotionEvents按顺序交给child，包括正在分发的这个事件*/
+    private void flushMotionEventCache() {
+        long startTime = 0;
+        long delay = 0;
+        if (dragMetrics != null) {
+            startTime = System.nanoTime();
+            // child 收到第一个缓存事件时，这个事件已经被推迟了多久
+            delay = motionEventsCache.isEmpty() ? 0 : SystemClock.uptimeMillis() - motionEventsCache.getEventTime(0);
+        }
+        // 开始处理缓存的标记值
+        isProcessingCache = true;
+        while (!motionEventsCache.isEmpty()) {
+            // 分发事件，重建的事件用完立即回收
+            MotionEvent event = motionEventsCache.obtainHead();
+            super.dispatchTouchEvent(event);
+            event.recycle();
+            // 清除对应的cache信息
+            motionEventsCache.poll();
+        }
+        // 结束处理缓存的标记值
+        isProcessingCache = false;
+        if (dragMetrics != null) {
+            dragMetrics.onCacheFlushed(System.nanoTime() - startTime, delay);
+        }
+    }
+
+    /*手势已经交给了child，事件直接透传*/
+    private boolean dispatchToChild(MotionEvent event) {
+        isProcessingCache = true;
+        boolean handled = super.dispatchTouchEvent(event);
+        isProcessingCache = false;
+        return handled;
+    }
+
+    /*从child手中拿回手势，child收到ACTION_CANCEL*/
+    private void cancelChildTouch(MotionEvent event) {
+        MotionEvent cancel = MotionEvent.obtain(event);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        dispatchToChild(cancel);
+        cancel.recycle();
+    }
+
+    /*取消手势的分类，缓存的事件直接丢弃*/
+    private void cancelGesture() {
+        removeCallbacks(checkPress);
+        motionEventsCache.clear();
+        gestureState = GESTURE_UNDECIDED;
+    }
+
+    /*在可以拖拽的方向上是否超过了 touch slop*/
+    private boolean isDragSlopExceeded(MotionEvent event) {
+        return dragCore.isDragSlopExceeded(activeRawX, activeRawY, event.getEventTime());
+    }
+
+    /*是否在任意方向上超过了 touch slop，isDragSlopExceeded 不成立时说明只在不能拖拽的方向上移动*/
+    private boolean isChildSlopExceeded() {
+        return dragCore.isTouchSlopExceeded(activeRawX, activeRawY);
+    }
+
+    // 检测是否已经按住超过了 tap timeout
+    // 具体的检测方案就是检测到ActionDown之后
+    // postDelay一个CheckPress事件
+    // 如果该事件发生时，手势依旧没有确定且cache的第一个事件是ActionDown，则把缓存的事件交给child，
+    // child 可以自己处理按下状态和长按，之后如果开始拖拽，child 会收到 ACTION_CANCEL
+    // 整个DragLayout只有这一个实例，在抬手、开始拖拽、detach的时候会被取消掉
+    private class CheckPress implements Runnable {
+
+        @Override
+        public void run() {
+            if (!dragCore.isDragging() && gestureState == GESTURE_UNDECIDED && !motionEventsCache.isEmpty()
+                    && motionEventsCache.peekAction() == MotionEvent.ACTION_DOWN) {
+                gestureState = GESTURE_PRESS;
+                if (dragMetrics != null) {
+                    dragMetrics.onPressTimeout();
+                }
+                flushMotionEventCache();
+            }
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (observedParent != null) {
+            observedParent.removeOnLayoutChangeListener(parentLayoutChangeListener);
+            observedParent = null;
+        }
+        isParentBoundsDirty = true;
+        // 释放所有等待中的回调和缓存的事件，避免detach之后还在操作这个view
+        abortDrag();
+        cancelGesture();
+        cancelPendingMove();
+        cancelDragMove();
+        endAutoScroll();
+        if (isMetricsFramePending) {
+            isMetricsFramePending = false;
+            removeCallbacks(metricsFrameRunnable);
+        }
+        endDragProxy();
+        stopFling();
+        stopAnimation();
+        if (isPositionRestorePending) {
+            // 窗口的 ViewTreeObserver 不能再持有这个 view
+            isPositionRestorePending = false;
+            isPositionRestoreDeferred = true;
+            getViewTreeObserver().removeOnPreDrawListener(restorePositionListener);
+        }
+        if (positionStore != null) {
+            // 可能马上就要退出进程，不再等待合并之后的修改
+            positionStore.flush();
+        }
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!dragEnable || isProcessingCache) {
+            return false;
+        }
+        //  进入onTouchEvent就表明onInterceptTouchEvent返回的true，此时并没触发ActionUp。
+        //  因此需要在平移和回调的时候判断状态信息
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_MOVE:
+                // 只跟随一根手指，其他手指的移动不影响位置；跟随的手指抬起时已经换成了剩下的手指
+                dragMoveEventTime = event.getEventTime();
+                float curX = activeRawX;
+                float curY = activeRawY;
+                if (dragPredictor.getMode() != PredictionMode.NONE) {
+                    // 跟随预测的位置，而不是当前事件的位置
+                    addPredictorSamples(event);
+                    dragPredictor.predict();
+                    curX = dragPredictor.getPredictedX();
+                    curY = dragPredictor.getPredictedY();
+                }
+
+                float dX = curX - dragCore.getMoveX();
+                float dY = curY - dragCore.getMoveY();
+                dragCore.moveTo(curX, curY);
+
+                if (!dragCore.isDragging()) {
+                    // 在可以拖拽的方向上超过最小滑动距离，则认定为滑动事件
+                    if (isDragSlopExceeded(event)) {
+                        dragCore.startDrag();
+                        gestureState = GESTURE_UNDECIDED;
+                        // 已经开始拖拽，缓存的事件也不会再交给child了
+                        removeCallbacks(checkPress);
+                        motionEventsCache.clear();
+                        snapAnchor = NO_ANCHOR;
+                        updateSnapWorld();
+                        beginDragProxy();
+                        if (dropZoneRegistry != null) {
+                            dropZoneRegistry.begin(this);
+                        }
+                        if (dragGroup != null) {
+                            dragGroup.begin(this);
+                        }
+                        if (dragConstraint != null) {
+                            dragConstraint.onDragStart(this);
+                        }
+                        beginDragMove(event.getEventTime());
+                        if (autoScrollEnable) {
+                            beginAutoScroll();
+                        }
+                        if (getParent() instanceof DragCoordinator) {
+                            ((DragCoordinator) getParent()).onChildDragStart(this);
+                        }
+                        if (onDragListener != null) {
+                            onDragListener.onDragStart(this);
+                        }
+                    } else if (isChildSlopExceeded()) {
+                        // 只在不能拖拽的方向上移动，不会是拖拽了，缓存的事件立即交给child，之后的事件直接透传
+                        removeCallbacks(checkPress);
+                        gestureState = GESTURE_CHILD;
+                        if (isParentInterceptDisallowed) {
+                            // 不是拖拽，交还给祖先，比如在 ScrollView 中滚动
+                            disallowParentIntercept(false);
+                        }
+                        flushMotionEventCache();
+                        return true;
+                    }
+                }
+
+                if (dragCore.isDragging()) {
+                    if (dragMetrics != null) {
+                        trackFrameLatency(event.getEventTime());
+                    }
+                    moveBy(dX, dY);
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                dragMoveEventTime = event.getEventTime();
+                float upX = activeRawX;
+                float upY = activeRawY;
+                if (dragCore.isDragging() && dragPredictor.getMode() != PredictionMode.NONE) {
+                    // 预测的位置可能超过了手指实际停下的位置，抬手时修正回来
+                    moveBy(upX - dragCore.getMoveX(), upY - dragCore.getMoveY());
+                }
+                dragCore.moveTo(upX, upY);
+                if (dragCore.isDragging()) {
+                    // 结束之前，把还没应用的位移应用掉
+                    applyPendingMove();
+                    if (dragGroup != null) {
+                        dragGroup.end(this);
+                    }
+                    endDragProxy();
+                    finishDragMove();
+                    endAutoScroll();
+                    dragCore.endDrag();
+                    if (dropZoneRegistry != null) {
+                        // 只有抬手才算放下，被取消的手势和 abortDrag 一样只是离开
+                        if (event.getAction() == MotionEvent.ACTION_UP) {
+                            dropZoneRegistry.drop(this);
+                        } else {
+                            dropZoneRegistry.cancel(this);
+                        }
+                    }
+                    if (onDragListener != null) {
+                        onDragListener.onDragEnd(this);
+                    }
+                    // DragCoordinator 要等到停稳之后再重新排布，吸附、惯性滑动结束时在 commitPosition 中通知
+                    isSettlePending = true;
+                    // 有可以吸附的锚点就吸附过去，否则再看是否需要惯性滑动
+                    if (!snapToAnchor() && flingEnable && event.getAction() == MotionEvent.ACTION_UP) {
+                        startFling();
+                    }
+                    if (!isFlinging && !isAnimating()) {
+                        // 后面没有惯性滑动和动画，现在就提交位置
+                        commitPosition();
+                    }
+                    return true;
+                }
+                break;
+        }
+        return true;
+    }
+
+    /*拖拽进行中被打断（不允许拖拽、detach），和抬手一样结束拖拽并通知各方，但不会惯性滑动、吸附，也不算放下*/
+    private void abortDrag() {
+        if (!dragCore.isDragging()) {
+            return;
+        }
+        applyPendingMove();
+        if (dragGroup != null) {
+            dragGroup.end(this);
+        }
+        // 代理的 Bitmap 从父布局的 overlay 中移除，自己移动到代理的位置
+        endDragProxy();
+        finishDragMove();
+        endAutoScroll();
+        dragCore.endDrag();
+        if (dropZoneRegistry != null) {
+            dropZoneRegistry.cancel(this);
+        }
+        if (onDragListener != null) {
+            onDragListener.onDragEnd(this);
+        }
+        isSettlePending = true;
+        commitPosition();
+    }
+
+    /*拖拽位移，开启了按帧合并的话就先累加起来*/
+    private void moveBy(float dX, float dY) {
+        if (dragGroup != null) {
+            // 在组内的话，由组统一计算和应用所有成员的位置，本身就是每帧一次
+            dragGroup.moveBy(this, dX, dY);
+            return;
+        }
+        if (frameCoalescing) {
+            // 先累加位移，等到下一帧再统一应用
+            pendingDX += dX;
+            pendingDY += dY;
+            pendingEventCount++;
+            if (!isMovePending) {
+                isMovePending = true;
+                ViewCompat.postOnAnimation(this, applyPendingMoveRunnable);
+            }
+        } else {
+            setTarget(dX, dY);
+            coalescedEventCount = 1;
+            onDragMoved();
+        }
+    }
+
+    /*作为拖拽组的 leader，组内的位置应用之后调用*/
+    void onGroupMoved() {
+        onDragMoved();
+    }
+
+    /*拖拽位移应用之后调用*/
+    private void onDragMoved() {
+        if (snapAnchors != null && snapAnchors.size() > 0) {
+            previewSnapAnchor();
+        }
+        if (dropZoneRegistry != null) {
+            dropZoneRegistry.update(this, getDragX(), getDragY());
+        }
+        if (onDragMoveListener != null) {
+            dispatchDragMove();
+        }
+        if (autoScrollTarget != null && !isAutoScrollPending) {
+            // 进入边缘之后由帧回调持续滚动，离开边缘时回调自己停下
+            scheduleAutoScroll();
+        }
+    }
+
+    /*拖拽开始时找到最近的可滚动祖先*/
+    private void beginAutoScroll() {
+        autoScrollTarget = findAutoScrollTarget();
+        if (autoScrollTarget == null) {
+            return;
+        }
+        disallowParentIntercept(true);
+        autoScrollRemainderX = 0;
+        autoScrollRemainderY = 0;
+        int axes = (isDragHorizontal() ? ViewCompat.SCROLL_AXIS_HORIZONTAL : 0)
+                | (isDragVertical() ? ViewCompat.SCROLL_AXIS_VERTICAL : 0);
+        isNestedAutoScroll = ViewCompat.isNestedScrollingEnabled(this) && ViewCompat.startNestedScroll(this, axes);
+    }
+
+    /*拖拽结束或者 detach 时停止自动滚动*/
+    private void endAutoScroll() {
+        if (isAutoScrollPending) {
+            isAutoScrollPending = false;
+            removeCallbacks(autoScrollRunnable);
+        }
+        if (isNestedAutoScroll) {
+            isNestedAutoScroll = false;
+            ViewCompat.stopNestedScroll(this);
+        }
+        autoScrollTarget = null;
+        isParentInterceptDisallowed = false;
+    }
+
+    /*在能拖拽的方向上还可以滚动的最近的祖先*/
+    private View findAutoScrollTarget() {
+        ViewParent parent = getParent();
+        while (parent instanceof View) {
+            View view = (View) parent;
+            if (isDragHorizontal() && (view.canScrollHorizontally(-1) || view.canScrollHorizontally(1))) {
+                return view;
+            }
+            if (isDragVertical() && (view.canScrollVertically(-1) || view.canScrollVertically(1))) {
+                return view;
+            }
+            parent = parent.getParent();
+        }
+        return null;
+    }
+
+    private void scheduleAutoScroll() {
+        isAutoScrollPending = true;
+        autoScrollFrameTime = AnimationUtils.currentAnimationTimeMillis();
+        ViewCompat.postOnAnimation(this, autoScrollRunnable);
+    }
+
+    /*每一帧按照手指到边缘的距离滚动祖先，再反向移动自己，抵消滚动带来的位移*/
+    private void computeAutoScroll() {
+        View target = autoScrollTarget;
+        if (target == null || !dragCore.isDragging()) {
+            return;
+        }
+        target.getLocationOnScreen(autoScrollLocation);
+        // 用手指实际的位置，开启了预测时 dragCore 中记录的是预测的位置，会提前开始滚动
+        float speedX = isDragHorizontal()
+                ? getAutoScrollSpeed(activeRawX - autoScrollLocation[0], target.getWidth()) : 0;
+        float speedY = isDragVertical()
+                ? getAutoScrollSpeed(activeRawY - autoScrollLocation[1], target.getHeight()) : 0;
+        if (speedX == 0 && speedY == 0) {
+            // 离开了边缘，下一次进入边缘时重新开始
+            autoScrollRemainderX = 0;
+            autoScrollRemainderY = 0;
+            return;
+        }
+        long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        float seconds = Math.min(frameTime - autoScrollFrameTime, MAX_AUTO_SCROLL_FRAME_TIME) / 1000f;
+        autoScrollFrameTime = frameTime;
+        autoScrollRemainderX += speedX * seconds;
+        autoScrollRemainderY += speedY * seconds;
+        int dX = (int) autoScrollRemainderX;
+        int dY = (int) autoScrollRemainderY;
+        autoScrollRemainderX -= dX;
+        autoScrollRemainderY -= dY;
+        if (dX != 0 && !target.canScrollHorizontally(dX)) {
+            dX = 0;
+        }
+        if (dY != 0 && !target.canScrollVertically(dY)) {
+            dY = 0;
+        }
+        if (dX != 0 || dY != 0) {
+            // 滚动前后自己在窗口中的位置差就是滚动带来的位移，ScrollView 移动的是父布局，RecyclerView 移动的是自己
+            getLocationInWindow(autoScrollLocation);
+            int windowX = autoScrollLocation[0];
+            int windowY = autoScrollLocation[1];
+            if (!isNestedAutoScroll || !ViewCompat.dispatchNestedScroll(this, 0, 0, dX, dY, null)) {
+                target.scrollBy(dX, dY);
+            }
+            getLocationInWindow(autoScrollLocation);
+            int shiftX = autoScrollLocation[0] - windowX;
+            int shiftY = autoScrollLocation[1] - windowY;
+            if (shiftX != 0 || shiftY != 0) {
+                // 手指没有动，反向移动保持在手指下方；滚动不会引起 layout，只是 translation 变化
+                moveToConstrained(getDragX() - shiftX, getDragY() - shiftY);
+                onDragMoved();
+            }
+        }
+        if (!isAutoScrollPending) {
+            isAutoScrollPending = true;
+            ViewCompat.postOnAnimation(this, autoScrollRunnable);
+        }
+    }
+
+    /**
+     * 手指在祖先中的位置对应的滚动速度，越靠近边缘越快，超出边缘按最大速度
+     *
+     * @param position 手指在祖先中的坐标
+     * @param size     祖先的宽或高
+     */
+    private float getAutoScrollSpeed(float position, int size) {
+        float edge = Math.min(autoScrollEdge, size / 2f);
+        if (position < edge) {
+            return -autoScrollMaxSpeed * Math.min(1, (edge - position) / edge);
+        }
+        if (position > size - edge) {
+            return autoScrollMaxSpeed * Math.min(1, (position - size + edge) / edge);
+        }
+        return 0;
+    }
+
+    /*是否允许祖先拦截事件，记录下来避免重复调用*/
+    private void disallowParentIntercept(boolean disallow) {
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(disallow);
+        }
+        isParentInterceptDisallowed = disallow;
+    }
+
+    /*记录这一帧中最早的事件，下一帧开始时统计从事件产生到这一帧的时间*/
+    private void trackFrameLatency(long eventTime) {
+        if (!isMetricsFramePending) {
+            isMetricsFramePending = true;
+            metricsEventTime = eventTime;
+            ViewCompat.postOnAnimation(this, metricsFrameRunnable);
+        }
+    }
+
+    /*开始拖拽，记录回调的起点*/
+    private void beginDragMove(long eventTime) {
+        deliveredX = getDragX();
+        deliveredY = getDragY();
+        deliveredTime = eventTime;
+    }
+
+    /*按照 dragMoveDelivery 决定这次移动是否立即回调*/
+    private void dispatchDragMove() {
+        switch (dragMoveDelivery) {
+            case MoveDelivery.PER_FRAME:
+                if (!isDragMovePending) {
+                    isDragMovePending = true;
+                    ViewCompat.postOnAnimation(this, dragMoveRunnable);
+                }
+                break;
+            case MoveDelivery.THROTTLE_TIME:
+                if (dragMoveEventTime - deliveredTime >= dragMoveInterval) {
+                    deliverDragMove();
+                }
+                break;
+            case MoveDelivery.THROTTLE_DISTANCE:
+                if (Math.hypot(getDragX() - deliveredX, getDragY() - deliveredY) >= dragMoveInterval) {
+                    deliverDragMove();
+                }
+                break;
+            default:
+                deliverDragMove();
+                break;
+        }
+    }
+
+    /*回调当前的位置，和上一次回调相比没有移动的话就跳过*/
+    private void deliverDragMove() {
+        float x = getDragX();
+        float y = getDragY();
+        float dX = x - deliveredX;
+        float dY = y - deliveredY;
+        if (dX == 0 && dY == 0) {
+            return;
+        }
+        deliveredX = x;
+        deliveredY = y;
+        deliveredTime = dragMoveEventTime;
+        if (onDragMoveListener != null) {
+            onDragMoveListener.onDragMove(this, x, y, dX, dY, dragMoveEventTime);
+        }
+    }
+
+    /*拖拽结束，还没回调的位置立即回调*/
+    private void finishDragMove() {
+        cancelDragMove();
+        deliverDragMove();
+    }
+
+    private void cancelDragMove() {
+        if (isDragMovePending) {
+            isDragMovePending = false;
+            removeCallbacks(dragMoveRunnable);
+        }
+    }
+
+    /*把事件中批量的 historical 采样点和当前采样点交给预测器*/
+    private void addPredictorSamples(MotionEvent event) {
+        // historical 采样点只有相对坐标，用当前事件的 raw 偏移换算成屏幕坐标
+        int pointerIndex = activePointerIndex;
+        float offsetX = activeRawX - event.getX(pointerIndex);
+        float offsetY = activeRawY - event.getY(pointerIndex);
+        for (int i = 0, size = event.getHistorySize(); i < size; i++) {
+            dragPredictor.addSample(event.getHistoricalEventTime(i),
+                    event.getHistoricalX(pointerIndex, i) + offsetX,
+                    event.getHistoricalY(pointerIndex, i) + offsetY);
+        }
+        dragPredictor.addSample(event.getEventTime(), activeRawX, activeRawY);
+    }
+
+    /*应用按帧累加的位移*/
+    private void applyPendingMove() {
+        if (!isMovePending) {
+            return;
+        }
+        isMovePending = false;
+        removeCallbacks(applyPendingMoveRunnable);
+        setTarget(pendingDX, pendingDY);
+        coalescedEventCount = pendingEventCount;
+        pendingDX = 0;
+        pendingDY = 0;
+        pendingEventCount = 0;
+        onDragMoved();
+    }
+
+    /*丢弃按帧累加的位移*/
+    private void cancelPendingMove() {
+        isMovePending = false;
+        removeCallbacks(applyPendingMoveRunnable);
+        pendingDX = 0;
+        pendingDY = 0;
+        pendingEventCount = 0;
+    }
+
+    /*记录速度，事件坐标换算成屏幕坐标，避免拖拽过程中自身的移动影响速度*/
+    private void trackVelocity(MotionEvent event) {
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            velocityTracker.clear();
+        }
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    /*根据抬手时的速度开始惯性滑动*/
+    private void startFling() {
+        stopAnimation();
+        if (velocityTracker == null) {
+            return;
+        }
+        velocityTracker.computeCurrentVelocity(1000, maximumFlingVelocity);
+        // 只看最后跟随的手指，中途换过手指的话，之前那根手指的速度没有意义
+        float velocityX = isDragHorizontal() ? velocityTracker.getXVelocity(activePointerId) : 0;
+        float velocityY = isDragVertical() ? velocityTracker.getYVelocity(activePointerId) : 0;
+        if (Math.hypot(velocityX, velocityY) < minimumFlingVelocity) {
+            return;
+        }
+
+        int minX = Integer.MIN_VALUE;
+        int maxX = Integer.MAX_VALUE;
+        int minY = Integer.MIN_VALUE;
+        int maxY = Integer.MAX_VALUE;
+        if (dragCore.isInsideParent()) {
+            ensureParentBounds();
+            minX = (int) dragCore.getMinX();
+            maxX = (int) dragCore.getMaxX();
+            minY = (int) dragCore.getMinY();
+            maxY = (int) dragCore.getMaxY();
+        }
+        if (flingScroller == null) {
+            flingScroller = new OverScroller(getContext());
+        }
+        flingScroller.fling((int) getX(), (int) getY(), (int) velocityX, (int) velocityY,
+                minX, maxX, minY, maxY);
+        isFlinging = true;
+        if (onDragListener instanceof OnDragFlingListener) {
+            ((OnDragFlingListener) onDragListener).onFlingStart(this, velocityX, velocityY);
+        }
+        ViewCompat.postOnAnimation(this, flingRunnable);
+    }
+
+    /*每一帧计算一次惯性滑动的位置*/
+    private void computeFling() {
+        if (!isFlinging) {
+            return;
+        }
+        boolean isBlocked = flingScroller.computeScrollOffset()
+                && moveToConstrained(flingScroller.getCurrX(), flingScroller.getCurrY());
+        // 碰到障碍物就停在那里，不会穿过去
+        if (isBlocked || flingScroller.isFinished()) {
+            stopFling();
+        } else {
+            ViewCompat.postOnAnimation(this, flingRunnable);
+        }
+    }
+
+    /*停止惯性滑动，停在当前的位置*/
+    private void stopFling() {
+        if (!isFlinging) {
+            return;
+        }
+        isFlinging = false;
+        removeCallbacks(flingRunnable);
+        flingScroller.forceFinished(true);
+        commitPosition();
+        if (onDragListener instanceof OnDragFlingListener) {
+            ((OnDragFlingListener) onDragListener).onFlingEnd(this);
+        }
+    }
+
+    /*锚点网格覆盖父布局的范围，超出父布局的锚点依然可以正常查询*/
+    private void updateSnapWorld() {
+        if (snapAnchors != null && getParent() instanceof View) {
+            View parent = (View) getParent();
+            snapAnchors.setWorld(0, 0, parent.getWidth(), parent.getHeight());
+        }
+    }
+
+    /**
+     * 查找离当前位置最近的锚点，结果保存在 snapAnchor、snapX、snapY 中。
+     * 吸附的位置和拖拽一样遵守{@link DragLimited}的限制。
+     */
+    private void findSnapAnchor() {
+        float x = getDragX();
+        float y = getDragY();
+        snapAnchor = snapAnchors.nearest(x, y, snapDistance);
+        if (snapAnchor == NO_ANCHOR) {
+            snapX = x;
+            snapY = y;
+            return;
+        }
+        // 吸附到锚点区域中离当前位置最近的点
+        float targetX = Math.max(snapAnchors.getLeft(snapAnchor), Math.min(x, snapAnchors.getRight(snapAnchor)));
+        float targetY = Math.max(snapAnchors.getTop(snapAnchor), Math.min(y, snapAnchors.getBottom(snapAnchor)));
+        snapX = isDragHorizontal() ? clampX(targetX) : x;
+        snapY = isDragVertical() ? clampY(targetY) : y;
+    }
+
+    /*拖拽过程中最近的锚点变化时通知预览*/
+    private void previewSnapAnchor() {
+        int lastAnchor = snapAnchor;
+        findSnapAnchor();
+        if (snapAnchor != lastAnchor && onSnapListener != null) {
+            onSnapListener.onSnapPreview(this, snapAnchor, snapX, snapY);
+        }
+    }
+
+    /**
+     * 抬手之后吸附到最近的锚点
+     *
+     * @return 是否找到了可以吸附的锚点
+     */
+    private boolean snapToAnchor() {
+        if (snapAnchors == null || snapAnchors.size() == 0) {
+            return false;
+        }
+        findSnapAnchor();
+        if (snapAnchor == NO_ANCHOR) {
+            return false;
+        }
+        if (onSnapListener != null) {
+            onSnapListener.onSnap(this, snapAnchor, snapX, snapY);
+        }
+        animateTo(snapX, snapY);
+        return true;
+    }
+
+    /*每一帧计算一次弹簧动画的位置*/
+    private void computeSpring() {
+        boolean running = dragSpring.step(AnimationUtils.currentAnimationTimeMillis());
+        if (moveToConstrained(dragSpring.getX(), dragSpring.getY())) {
+            // 目标在障碍物的另一侧，停在碰到障碍物的位置
+            dragSpring.stop();
+            running = false;
+        }
+        if (running) {
+            ViewCompat.postOnAnimation(this, springRunnable);
+        } else {
+            commitPosition();
+        }
+    }
+
+    /*找到跟随的手指在这个事件中的下标和屏幕坐标，跟随的手指抬起时换成剩下的手指中的一根*/
+    private void resolveActivePointer(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            activePointerId = ev.getPointerId(0);
+        }
+        int pointerIndex = ev.findPointerIndex(activePointerId);
+        if (pointerIndex < 0) {
+            // 没有收到过这根手指的 ACTION_DOWN（比如 attach 的时候手指已经按下），跟随第一根手指
+            pointerIndex = 0;
+            activePointerId = ev.getPointerId(0);
+        }
+        // 所有手指的 raw 偏移都一样，都是这个 view 在屏幕上的位置
+        float offsetX = ev.getRawX() - ev.getX();
+        float offsetY = ev.getRawY() - ev.getY();
+        if (action == MotionEvent.ACTION_POINTER_UP && ev.getActionIndex() == pointerIndex) {
+            pointerIndex = pointerIndex == 0 ? 1 : 0;
+            activePointerId = ev.getPointerId(pointerIndex);
+            activeRawX = ev.getX(pointerIndex) + offsetX;
+            activeRawY = ev.getY(pointerIndex) + offsetY;
+            activePointerIndex = pointerIndex;
+            // 从新手指现在的位置继续，之前的位移保持不变，不会跳到新手指的位置
+            dragCore.switchPointer(activeRawX, activeRawY);
+            dragPredictor.reset();
+            dragPredictor.addSample(ev.getEventTime(), activeRawX, activeRawY);
+            return;
+        }
+        activePointerIndex = pointerIndex;
+        activeRawX = ev.getX(pointerIndex) + offsetX;
+        activeRawY = ev.getY(pointerIndex) + offsetY;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (gestureTraceRecorder != null && !isProcessingCache) {
+            gestureTraceRecorder.record(this, ev);
+        }
+        if (!dragEnable || isProcessingCache) {
+            //  不允许拖拽，或者是正在交给child的事件，按普通的ViewGroup处理
+            return super.dispatchTouchEvent(ev);
+        }
+        if (dragMetrics == null) {
+            return dispatchDragTouchEvent(ev);
+        }
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            dragMetrics.onGestureStart();
+        }
+        long startTime = System.nanoTime();
+        boolean handled = dispatchDragTouchEvent(ev);
+        dragMetrics.onEventHandled(System.nanoTime() - startTime);
+        return handled;
+    }
+
+    /*按照手势的分类把事件交给child或者自己处理*/
+    private boolean dispatchDragTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        resolveActivePointer(ev);
+        if (action == MotionEvent.ACTION_DOWN) {
+            // 上一个手势没有收到抬手（比如被祖先截走了），先把它的拖拽结束掉
+            abortDrag();
+            gestureState = GESTURE_UNDECIDED;
+            isParentInterceptDisallowed = false;
+            if (autoScrollEnable) {
+                // 手势确定之前不让可滚动的祖先拦截，否则祖先会先把拖拽当成滚动
+                disallowParentIntercept(true);
+            }
+        } else if (gestureState == GESTURE_PRESS && action == MotionEvent.ACTION_MOVE && isDragSlopExceeded(ev)) {
+            // 按住之后又开始拖拽，从child手中拿回手势
+            cancelChildTouch(ev);
+            gestureState = GESTURE_UNDECIDED;
+        }
+        if (gestureState != GESTURE_UNDECIDED) {
+            //  手势已经交给了child，事件直接透传，不再缓存
+            //  按住的时候依旧需要跟踪位置和速度，之后可能会开始拖拽
+            if (gestureState == GESTURE_PRESS) {
+                if (flingEnable) {
+                    trackVelocity(ev);
+                }
+                dragCore.moveTo(activeRawX, activeRawY);
+                if (isParentInterceptDisallowed && action == MotionEvent.ACTION_MOVE && isChildSlopExceeded()) {
+                    disallowParentIntercept(false);
+                }
+            }
+            boolean handled = dispatchToChild(ev);
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                gestureState = GESTURE_UNDECIDED;
+            }
+            return handled;
+        }
+        if (onInterceptTouchEvent(ev)) {
+            // 直接拦截自己处理
+            return onTouchEvent(ev);
+        }
+        //  没有拦截的只有还没开始拖拽就结束的手势，缓存的事件（包括这一个）已经交给了child
+        return true;
+    }
+
+    private void setTarget(float dX, float dY) {
+        moveToConstrained(getDragX() + dX, getDragY() + dY);
+    }
+
+    @Override
+    public void requestLayout() {
+        super.requestLayout();
+        if (dragMetrics != null) {
+            dragMetrics.onLayoutRequested();
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if (dragMetrics != null) {
+            dragMetrics.onLayout();
+        }
+    }
+
+    @Override
+    public void offsetLeftAndRight(int offset) {
+        super.offsetLeftAndRight(offset);
+        notifyCoordinator();
+    }
+
+    @Override
+    public void offsetTopAndBottom(int offset) {
+        super.offsetTopAndBottom(offset);
+        notifyCoordinator();
+    }
+
+    @Override
+    public void setTranslationX(float translationX) {
+        super.setTranslationX(translationX);
+        notifyCoordinator();
+    }
+
+    @Override
+    public void setTranslationY(float translationY) {
+        super.setTranslationY(translationY);
+        notifyCoordinator();
+    }
+
+    /*父布局是 DragCoordinator 的话，通知它自己的位置变化了*/
+    private void notifyCoordinator() {
+        if (!isCoordinatorMoved && getParent() instanceof DragCoordinator) {
+            ((DragCoordinator) getParent()).onChildMoved(this);
+        }
+    }
+
+    /*停止惯性滑动和动画*/
+    void stopMovement() {
+        stopFling();
+        stopAnimation();
+    }
+
+    /*x 方向允许的最小值，没有限制时为 -Float.MAX_VALUE*/
+    float getMinDragX() {
+        return clampX(-Float.MAX_VALUE);
+    }
+
+    float getMaxDragX() {
+        return clampX(Float.MAX_VALUE);
+    }
+
+    float getMinDragY() {
+        return clampY(-Float.MAX_VALUE);
+    }
+
+    float getMaxDragY() {
+        return clampY(Float.MAX_VALUE);
+    }
+
+    /*开始拖拽，开启了拖拽代理的话，之后的移动都交给代理*/
+    private void beginDragProxy() {
+        if (!dragProxyEnable) {
+            return;
+        }
+        if (dragProxy == null) {
+            dragProxy = new DragProxy();
+        }
+        isProxyDragging = dragProxy.begin(this);
+    }
+
+    /*结束拖拽代理，自己移动到代理的位置*/
+    private void endDragProxy() {
+        if (!isProxyDragging) {
+            return;
+        }
+        isProxyDragging = false;
+        float x = dragProxy.getX();
+        float y = dragProxy.getY();
+        dragProxy.end();
+        applyPosition(x, y);
+    }
+
+    /*拖拽过程中的位置，拖拽代理显示时是代理的位置*/
+    float getDragX() {
+        if (isProxyDragging) {
+            return dragProxy.getX();
+        }
+        float x = getX();
+        return x == appliedX ? intendedX : x;
+    }
+
+    float getDragY() {
+        if (isProxyDragging) {
+            return dragProxy.getY();
+        }
+        float y = getY();
+        return y == appliedY ? intendedY : y;
+    }
+
+    /*用{@link MovementStrategy}移动到指定的位置，不能拖拽的方向保持不变；拖拽代理显示时只移动代理*/
+    void applyPosition(float x, float y) {
+        float currentX = getDragX();
+        float currentY = getDragY();
+        if (!isDragHorizontal()) {
+            x = currentX;
+        }
+        if (!isDragVertical()) {
+            y = currentY;
+        }
+        if (x == currentX && y == currentY) {
+            return;
+        }
+        // 只在开启了统计时计时，否则每次移动都多两次 System.nanoTime()
+        long startTime = dragMetrics != null ? System.nanoTime() : 0;
+        if (isProxyDragging) {
+            dragProxy.moveTo(x, y);
+        } else {
+            movementStrategy.moveTo(this, x, y);
+            intendedX = x;
+            intendedY = y;
+            appliedX = getX();
+            appliedY = getY();
+        }
+        if (dragMetrics != null) {
+            dragMetrics.onMoveApplied(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * 按照{@link DragLimited}和{@link DragConstraint}的限制移动到 (toX, toY)。
+     * 拖拽、惯性滑动、吸附的动画和自动滚动的补偿都通过这里移动，任何一种移动都不会穿过障碍物。
+     *
+     * @return 是否被 DragConstraint 挡住了，惯性滑动和动画据此停在碰到的位置
+     */
+    private boolean moveToConstrained(float toX, float toY) {
+        float currentX = getDragX();
+        float currentY = getDragY();
+        float x = isDragHorizontal() ? clampX(toX) : currentX;
+        float y = isDragVertical() ? clampY(toY) : currentY;
+        boolean isBlocked = false;
+        if (dragConstraint != null) {
+            float constrainedX = dragConstraint.constrainX(this, currentX, currentY, x);
+            // 先解决水平方向，垂直方向的约束用水平方向移动之后的位置
+            float constrainedY = dragConstraint.constrainY(this, constrainedX, currentY, y);
+            isBlocked = constrainedX != x || constrainedY != y;
+            x = constrainedX;
+            y = constrainedY;
+        }
+        applyPosition(x, y);
+        return isBlocked;
+    }
+
+    /*按照 INSIDE_PARENT 的规则限制 x*/
+    private float clampX(float x) {
+        if (dragCore.isInsideParent()) {
+            ensureParentBounds();
+        }
+        return dragCore.clampX(x);
+    }
+
+    /*按照 INSIDE_PARENT 的规则限制 y*/
+    private float clampY(float y) {
+        if (dragCore.isInsideParent()) {
+            ensureParentBounds();
+        }
+        return dragCore.clampY(y);
+    }
+
+    /*如果父布局或自己的尺寸变化过，就重新计算 INSIDE_PARENT 的范围*/
+    private void ensureParentBounds() {
+        if (isParentBoundsDirty) {
+            dragCore.setBounds(getMinLeftInsideParent(), getMaxRightInsideParent(),
+                    getMinTopInsideParent(), getMaxBottomInsideParent());
+            // 没有监听父布局的变化时无法得知范围什么时候失效，因此不能缓存
+            isParentBoundsDirty = observedParent == null;
+        }
+    }
+
+    /*父布局的 layout 变化（包括 padding 变化引起的重新 layout）时，范围失效*/
+    private final OnLayoutChangeListener parentLayoutChangeListener = new OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            isParentBoundsDirty = true;
+        }
+    };
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (getParent() instanceof View) {
+            observedParent = (View) getParent();
+            observedParent.addOnLayoutChangeListener(parentLayoutChangeListener);
+        }
+        isParentBoundsDirty = true;
+        if (isPositionRestoreDeferred) {
+            isPositionRestoreDeferred = false;
+            schedulePositionRestore();
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState savedState = new SavedState(super.onSaveInstanceState());
+        // 还没有绘制过时保存等待恢复的位置
+        savedState.x = hasRestoredPosition ? restoredX : getX();
+        savedState.y = hasRestoredPosition ? restoredY : getY();
+        return savedState;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        // 此时可能还没有 layout，left、top 还不确定，等到第一次绘制之前再移动
+        hasRestoredPosition = true;
+        restoredX = savedState.x;
+        restoredY = savedState.y;
+        schedulePositionRestore();
+    }
+
+    /*在下一次绘制之前恢复位置，此时 layout 已经完成*/
+    private void schedulePositionRestore() {
+        if (!isPositionRestorePending) {
+            isPositionRestorePending = true;
+            getViewTreeObserver().addOnPreDrawListener(restorePositionListener);
+            // 已经绘制过时需要一次新的绘制才会回调
+            invalidate();
+        }
+    }
+
+    /*恢复 onRestoreInstanceState 或者 DragPositionStore 中的位置，超出范围的部分按 INSIDE_PARENT 限制*/
+    private void restorePosition() {
+        isPositionRestorePending = false;
+        float x;
+        float y;
+        if (hasRestoredPosition) {
+            hasRestoredPosition = false;
+            x = restoredX;
+            y = restoredY;
+        } else if (positionStore != null) {
+            PointF position = positionStore.get(positionKey);
+            if (position == null) {
+                return;
+            }
+            x = position.x;
+            y = position.y;
+        } else {
+            return;
+        }
+        if (dragCore.isDragging() || isFlinging || isAnimating()) {
+            // 已经开始移动了，以当前的位置为准
+            return;
+        }
+        applyPosition(clampX(x), clampY(y));
+        movementStrategy.commit(this);
+    }
+
+    static class SavedState extends BaseSavedState {
+
+        float x;
+        float y;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel source) {
+            super(source);
+            x = source.readFloat();
+            y = source.readFloat();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeFloat(x);
+            out.writeFloat(y);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source) {
+                return new SavedState(source);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        isParentBoundsDirty = true;
     }
 
-    private boolean isDragInsideParent() {
-        return (dragLimited & DragLimited.INSIDE_PARENT) == DragLimited.INSIDE_PARENT;
+    /*是否正在被手指拖拽*/
+    boolean isDragging() {
+        return dragCore.isDragging();
     }
 
     /*能否水平方向拖拽*/
-    private boolean isDragHorizontal() {
-        // 有 Vertical 没有 Horizontal，就是不行的，其他的都行
-        return (dragLimited & DragLimited.VERTICAL) != DragLimited.VERTICAL ||
-                (dragLimited & DragLimited.HORIZONTAL) == DragLimited.HORIZONTAL;
+    boolean isDragHorizontal() {
+        return dragCore.isHorizontal();
     }
 
     /*能否垂直方向拖拽*/
-    private boolean isDragVertical() {
-        // 有 Horizontal 没有 Vertical，就是不行的，其他的都行
-        return (dragLimited & DragLimited.HORIZONTAL) != DragLimited.HORIZONTAL ||
-                (dragLimited & DragLimited.VERTICAL) == DragLimited.VERTICAL;
+    boolean isDragVertical() {
+        return dragCore.isVertical();
     }
 
     private int getMinTopInsideParent() {
@@ -0,0 +1,340 @@
+package com.biubiu.widget.layout;
+
+import androidx.annotation.NonNull;
+
+/**
+ * DragLayout 的性能统计，通过{@link DragLayout#setDragMetrics(DragMetrics)}开启，设置为 null 就完全没有开销。
+ * 可以被多个 DragLayout 共用，只能在主线程使用。
+ * <p>
+ * 所有的数据都是基本类型的计数器和直方图，记录的时候没有分配；
+ * 最近一个手势的数据用 getLast 开头的方法读取，累计的数据可以随时读取，或者用{@link #dump(StringBuilder)}输出，
+ * {@link #reset()}清零。
+ */
+public class DragMetrics {
+
+    /**
+     * 按 2 的幂分桶的直方图：第 0 个桶是 0，第 i 个桶是 [2^(i-1), 2^i)，最后一个桶包括所有更大的值
+     */
+    public static final class Histogram {
+
+        private static final int BUCKET_COUNT = 24;
+
+        private final long[] buckets = new long[BUCKET_COUNT];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1);
+            buckets[bucket]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public float getMean() {
+            return count == 0 ? 0 : (float) sum / count;
+        }
+
+        public int getBucketCount() {
+            return BUCKET_COUNT;
+        }
+
+        /*第 bucket 个桶中的数量*/
+        public long getBucket(int bucket) {
+            return buckets[bucket];
+        }
+
+        /*第 bucket 个桶的上界（不包括）*/
+        public long getBucketUpperBound(int bucket) {
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        /**
+         * 近似的分位数，返回所在桶的上界，最大不超过{@link #getMax()}
+         *
+         * @param percentile 0 到 1 之间
+         */
+        public long getPercentile(float percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * Math.max(0, Math.min(percentile, 1)));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(i == 0 ? 0 : getBucketUpperBound(i) - 1, max);
+                }
+            }
+            return max;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = 0;
+            }
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        void dump(StringBuilder builder, String name, String unit) {
+            builder.append(name)
+                    .append(": count=").append(count)
+                    .append(" mean=").append(getMean()).append(unit)
+                    .append(" p50=").append(getPercentile(0.5f)).append(unit)
+                    .append(" p95=").append(getPercentile(0.95f)).append(unit)
+                    .append(" max=").append(max).append(unit)
+                    .append('\n');
+        }
+    }
+
+    // 累计的计数器
+    private long gestureCount;
+    private long eventCount;
+    private long moveApplyCount;
+    private long moveApplyNanos;
+    private long layoutRequestCount;
+    private long layoutCount;
+    private long handlerNanos;
+    private long pressTimeoutCount;
+    private long cacheFlushCount;
+    private long cacheFlushNanos;
+    private int peakCacheSize;
+
+    // 最近一个手势的计数器
+    private int lastEventCount;
+    private int lastMoveApplyCount;
+    private long lastMoveApplyNanos;
+    private long lastHandlerNanos;
+    private int lastPeakCacheSize;
+    private long lastCacheFlushNanos;
+    private long lastCacheFlushDelay;
+
+    // 每个事件在 DragLayout 中处理的时间，单位 µs
+    private final Histogram handlerTime = new Histogram();
+    // 缓存的事件交给 child 时，第一个事件被推迟的时间，单位 ms
+    private final Histogram cacheFlushDelay = new Histogram();
+    // 拖拽时从事件产生到下一帧开始的时间，单位 ms
+    private final Histogram frameLatency = new Histogram();
+
+    /*新的手势开始*/
+    void onGestureStart() {
+        gestureCount++;
+        lastEventCount = 0;
+        lastMoveApplyCount = 0;
+        lastMoveApplyNanos = 0;
+        lastHandlerNanos = 0;
+        lastPeakCacheSize = 0;
+        lastCacheFlushNanos = 0;
+        lastCacheFlushDelay = 0;
+    }
+
+    /*DragLayout 处理完一个事件，包括把缓存事件交给 child 的时间*/
+    void onEventHandled(long nanos) {
+        eventCount++;
+        lastEventCount++;
+        handlerNanos += nanos;
+        lastHandlerNanos += nanos;
+        handlerTime.record(nanos / 1000);
+    }
+
+    void onCacheSize(int size) {
+        lastPeakCacheSize = Math.max(lastPeakCacheSize, size);
+        peakCacheSize = Math.max(peakCacheSize, size);
+    }
+
+    /*缓存的事件交给了 child*/
+    void onCacheFlushed(long nanos, long delay) {
+        cacheFlushCount++;
+        cacheFlushNanos += nanos;
+        lastCacheFlushNanos += nanos;
+        lastCacheFlushDelay = delay;
+        cacheFlushDelay.record(delay);
+    }
+
+    void onPressTimeout() {
+        pressTimeoutCount++;
+    }
+
+    /*用 MovementStrategy 移动了一次，nanos 是移动花费的时间（包括 invalidate）*/
+    void onMoveApplied(long nanos) {
+        moveApplyCount++;
+        lastMoveApplyCount++;
+        moveApplyNanos += nanos;
+        lastMoveApplyNanos += nanos;
+    }
+
+    void onLayoutRequested() {
+        layoutRequestCount++;
+    }
+
+    void onLayout() {
+        layoutCount++;
+    }
+
+    void onFrame(long latency) {
+        frameLatency.record(latency);
+    }
+
+    public long getGestureCount() {
+        return gestureCount;
+    }
+
+    /*DragLayout 处理的事件总数，不包括交给 child 的缓存事件*/
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /*实际移动位置的次数，和{@link #getEventCount()}比较可以看出合并、跳过了多少移动*/
+    public long getMoveApplyCount() {
+        return moveApplyCount;
+    }
+
+    /*移动位置花费的总时间（包括 invalidate），单位 ns，可以用来比较不同的 MovementStrategy*/
+    public long getMoveApplyNanos() {
+        return moveApplyNanos;
+    }
+
+    /*DragLayout 调用 requestLayout 的次数*/
+    public long getLayoutRequestCount() {
+        return layoutRequestCount;
+    }
+
+    /*DragLayout 被 layout 的次数*/
+    public long getLayoutCount() {
+        return layoutCount;
+    }
+
+    /*在 DragLayout 中处理事件的总时间，单位 ns*/
+    public long getHandlerNanos() {
+        return handlerNanos;
+    }
+
+    /*按住超过 tap timeout，把手势交给 child 的次数*/
+    public long getPressTimeoutCount() {
+        return pressTimeoutCount;
+    }
+
+    public long getCacheFlushCount() {
+        return cacheFlushCount;
+    }
+
+    /*把缓存事件交给 child 的总时间，单位 ns*/
+    public long getCacheFlushNanos() {
+        return cacheFlushNanos;
+    }
+
+    /*事件缓存的最大长度*/
+    public int getPeakCacheSize() {
+        return peakCacheSize;
+    }
+
+    public int getLastEventCount() {
+        return lastEventCount;
+    }
+
+    public int getLastMoveApplyCount() {
+        return lastMoveApplyCount;
+    }
+
+    public long getLastMoveApplyNanos() {
+        return lastMoveApplyNanos;
+    }
+
+    public long getLastHandlerNanos() {
+        return lastHandlerNanos;
+    }
+
+    public int getLastPeakCacheSize() {
+        return lastPeakCacheSize;
+    }
+
+    public long getLastCacheFlushNanos() {
+        return lastCacheFlushNanos;
+    }
+
+    /*最近一个手势中，child 收到第一个事件比事件产生晚了多久，单位 ms*/
+    public long getLastCacheFlushDelay() {
+        return lastCacheFlushDelay;
+    }
+
+    @NonNull
+    public Histogram getHandlerTime() {
+        return handlerTime;
+    }
+
+    @NonNull
+    public Histogram getCacheFlushDelay() {
+        return cacheFlushDelay;
+    }
+
+    @NonNull
+    public Histogram getFrameLatency() {
+        return frameLatency;
+    }
+
+    public void reset() {
+        gestureCount = 0;
+        eventCount = 0;
+        moveApplyCount = 0;
+        moveApplyNanos = 0;
+        layoutRequestCount = 0;
+        layoutCount = 0;
+        handlerNanos = 0;
+        pressTimeoutCount = 0;
+        cacheFlushCount = 0;
+        cacheFlushNanos = 0;
+        peakCacheSize = 0;
+        lastEventCount = 0;
+        lastMoveApplyCount = 0;
+        lastMoveApplyNanos = 0;
+        lastHandlerNanos = 0;
+        lastPeakCacheSize = 0;
+        lastCacheFlushNanos = 0;
+        lastCacheFlushDelay = 0;
+        handlerTime.reset();
+        cacheFlushDelay.reset();
+        frameLatency.reset();
+    }
+
+    /**
+     * 把当前的数据以文本的形式追加到 builder 中
+     */
+    public void dump(@NonNull StringBuilder builder) {
+        builder.append("gestures=").append(gestureCount)
+                .append(" events=").append(eventCount)
+                .append(" moves=").append(moveApplyCount)
+                .append(" move=").append(moveApplyNanos / 1000).append("us")
+                .append(" layoutRequests=").append(layoutRequestCount)
+                .append(" layouts=").append(layoutCount)
+                .append(" handler=").append(handlerNanos / 1000).append("us")
+                .append(" pressTimeouts=").append(pressTimeoutCount)
+                .append(" flushes=").append(cacheFlushCount)
+                .append(" flush=").append(cacheFlushNanos / 1000).append("us")
+                .append(" peakCache=").append(peakCacheSize)
+                .append('\n');
+        handlerTime.dump(builder, "handlerTime", "us");
+        cacheFlushDelay.dump(builder, "cacheFlushDelay", "ms");
+        frameLatency.dump(builder, "frameLatency", "ms");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        dump(builder);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.biubiu.widget.layout;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.PointF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 key 保存 DragLayout 的位置，通过{@link DragLayout#setDragPositionStore(DragPositionStore, String)}交给 DragLayout 使用，
+ * 多个 DragLayout 可以用不同的 key 共用同一个 store。
+ * <p>
+ * 位置保存在 SharedPreferences 中，每个 key 一个 long（x、y 两个 float 拼在一起）。
+ * {@link #put(String, float, float)}只修改内存中的位置，连续的修改会合并，
+ * 在最后一次修改{@link #setWriteDelay(long) 一段时间}之后才在后台线程写入，主线程不会因为写文件卡顿。
+ * <p>
+ * 除了{@link #flush()}写入磁盘的部分，其他方法都只能在主线程调用。
+ */
+public class DragPositionStore {
+
+    // 默认的写入延迟，单位 ms
+    public static final long DEFAULT_WRITE_DELAY = 500;
+
+    // 所有 store 共用的写入线程，空闲一段时间之后退出
+    private static ThreadPoolExecutor writeExecutor;
+
+    private final SharedPreferences preferences;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // 内存中的位置，包含还没有写入的修改，读取时优先使用
+    private final Map<String, Long> positions = new HashMap<>();
+    // 还没有写入的修改，值为 null 表示删除
+    private final Map<String, Long> pendingWrites = new HashMap<>();
+    private long writeDelay = DEFAULT_WRITE_DELAY;
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param name SharedPreferences 的名字，第一次读取之前就开始在后台加载
+     */
+    public DragPositionStore(@NonNull Context context, @NonNull String name) {
+        preferences = context.getApplicationContext().getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 设置写入延迟，在最后一次修改之后等待这么长时间再写入，默认{@value #DEFAULT_WRITE_DELAY}
+     *
+     * @param writeDelay 单位 ms，为 0 时每次修改之后都会尽快写入
+     */
+    public void setWriteDelay(long writeDelay) {
+        if (writeDelay < 0) {
+            throw new IllegalArgumentException("写入延迟不能小于 0");
+        }
+        this.writeDelay = writeDelay;
+    }
+
+    public long getWriteDelay() {
+        return writeDelay;
+    }
+
+    /**
+     * 保存位置，坐标和 DragLayout 的{@link android.view.View#getX()}、{@link android.view.View#getY()}的含义相同
+     */
+    public void put(@NonNull String key, float x, float y) {
+        Long position = pack(x, y);
+        positions.put(key, position);
+        pendingWrites.put(key, position);
+        scheduleFlush();
+    }
+
+    /**
+     * 读取位置，第一次读取时如果 SharedPreferences 还没有加载完成，会等待加载完成
+     *
+     * @return 没有保存过返回 null
+     */
+    @Nullable
+    public PointF get(@NonNull String key) {
+        Long position = positions.get(key);
+        if (position == null) {
+            if (pendingWrites.containsKey(key) || !preferences.contains(key)) {
+                return null;
+            }
+            position = preferences.getLong(key, 0);
+            positions.put(key, position);
+        }
+        return new PointF(unpackX(position), unpackY(position));
+    }
+
+    public void remove(@NonNull String key) {
+        positions.remove(key);
+        pendingWrites.put(key, null);
+        scheduleFlush();
+    }
+
+    /**
+     * 立即把还没有写入的修改交给后台线程写入，不等待写入完成
+     */
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        final Map<String, Long> writes = new HashMap<>(pendingWrites);
+        pendingWrites.clear();
+        getWriteExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                SharedPreferences.Editor editor = preferences.edit();
+                for (Map.Entry<String, Long> write : writes.entrySet()) {
+                    if (write.getValue() == null) {
+                        editor.remove(write.getKey());
+                    } else {
+                        editor.putLong(write.getKey(), write.getValue());
+                    }
+                }
+                // 已经在后台线程，用 commit 同步写入，不像 apply 那样在 Activity 暂停时阻塞主线程等待写入
+                editor.commit();
+            }
+        });
+    }
+
+    /*重新开始计时，合并连续的修改*/
+    private void scheduleFlush() {
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, writeDelay);
+    }
+
+    private static synchronized ThreadPoolExecutor getWriteExecutor() {
+        if (writeExecutor == null) {
+            // 单个线程按顺序写入，同一个 key 的修改不会乱序
+            writeExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DragPositionStore");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            writeExecutor.allowCoreThreadTimeOut(true);
+        }
+        return writeExecutor;
+    }
+
+    private static long pack(float x, float y) {
+        return ((long) Float.floatToIntBits(x) << 32) | (Float.floatToIntBits(y) & 0xFFFFFFFFL);
+    }
+
+    private static float unpackX(long position) {
+        return Float.intBitsToFloat((int) (position >>> 32));
+    }
+
+    private static float unpackY(long position) {
+        return Float.intBitsToFloat((int) position);
+    }
+}
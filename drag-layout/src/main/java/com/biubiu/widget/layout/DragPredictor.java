@@ -0,0 +1,176 @@
+package com.biubiu.widget.layout;
+
+/**
+ * 根据最近的触摸采样点预测手指在一小段时间之后的位置，用来抵消触摸到显示之间的延迟。
+ * 采样点保存在固定大小的环形数组中，预测和误差统计都不会产生分配。
+ * <p>
+ * 预测方式参见{@link DragLayout.PredictionMode}。
+ */
+final class DragPredictor {
+
+    // 最多保留的采样点个数
+    private static final int CAPACITY = 8;
+    // 超过这个时间的采样点不参与最小二乘拟合
+    private static final long LEAST_SQUARES_WINDOW = 100;
+    // 平均误差的平滑系数
+    private static final float ERROR_SMOOTHING = 0.2f;
+
+    private final long[] times = new long[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    // 下一个采样点写入的位置
+    private int next;
+    private int count;
+
+    private int mode = DragLayout.PredictionMode.NONE;
+    private long horizon;
+
+    private float predictedX;
+    private float predictedY;
+
+    // 上一次预测用的模型，新的采样点到来时用来计算预测误差
+    private boolean hasModel;
+    private long modelTime;
+    private float modelX;
+    private float modelY;
+    private float modelVelocityX;
+    private float modelVelocityY;
+
+    private float lastError;
+    private float averageError;
+
+    void setMode(int mode) {
+        this.mode = mode;
+    }
+
+    int getMode() {
+        return mode;
+    }
+
+    void setHorizon(long horizon) {
+        this.horizon = horizon;
+    }
+
+    long getHorizon() {
+        return horizon;
+    }
+
+    /*开始新的手势，采样点清空，误差统计保留*/
+    void reset() {
+        next = 0;
+        count = 0;
+        hasModel = false;
+    }
+
+    /**
+     * 添加一个采样点，时间必须是递增的；时间相同的采样点会覆盖上一个。
+     */
+    void addSample(long time, float x, float y) {
+        if (count > 0) {
+            int last = (next - 1 + CAPACITY) % CAPACITY;
+            if (time <= times[last]) {
+                xs[last] = x;
+                ys[last] = y;
+                return;
+            }
+        }
+        times[next] = time;
+        xs[next] = x;
+        ys[next] = y;
+        next = (next + 1) % CAPACITY;
+        if (count < CAPACITY) {
+            count++;
+        }
+    }
+
+    /**
+     * 用当前的采样点预测 horizon 之后的位置，结果通过{@link #getPredictedX()}、{@link #getPredictedY()}获取。
+     * 在预测之前，先用最新的采样点统计上一次预测的误差。
+     */
+    void predict() {
+        if (count == 0) {
+            return;
+        }
+        int last = (next - 1 + CAPACITY) % CAPACITY;
+        long lastTime = times[last];
+        float lastX = xs[last];
+        float lastY = ys[last];
+
+        if (hasModel && lastTime > modelTime) {
+            long dTime = lastTime - modelTime;
+            float errorX = modelX + modelVelocityX * dTime - lastX;
+            float errorY = modelY + modelVelocityY * dTime - lastY;
+            lastError = (float) Math.sqrt(errorX * errorX + errorY * errorY);
+            averageError += (lastError - averageError) * ERROR_SMOOTHING;
+        }
+
+        float velocityX = 0;
+        float velocityY = 0;
+        if (mode == DragLayout.PredictionMode.LINEAR) {
+            if (count >= 2) {
+                int prev = (last - 1 + CAPACITY) % CAPACITY;
+                long dTime = lastTime - times[prev];
+                if (dTime > 0) {
+                    velocityX = (lastX - xs[prev]) / dTime;
+                    velocityY = (lastY - ys[prev]) / dTime;
+                }
+            }
+        } else if (mode == DragLayout.PredictionMode.LEAST_SQUARES) {
+            // 对窗口内的采样点分别做 x-t、y-t 的线性回归，斜率就是速度
+            int n = 0;
+            float sumT = 0;
+            float sumX = 0;
+            float sumY = 0;
+            float sumTT = 0;
+            float sumTX = 0;
+            float sumTY = 0;
+            for (int i = 0; i < count; i++) {
+                int index = (last - i + CAPACITY) % CAPACITY;
+                long age = lastTime - times[index];
+                if (age > LEAST_SQUARES_WINDOW) {
+                    break;
+                }
+                // 以最新的采样点为时间原点，避免 float 精度问题
+                float t = -age;
+                sumT += t;
+                sumX += xs[index];
+                sumY += ys[index];
+                sumTT += t * t;
+                sumTX += t * xs[index];
+                sumTY += t * ys[index];
+                n++;
+            }
+            float denominator = n * sumTT - sumT * sumT;
+            if (n >= 2 && denominator != 0) {
+                velocityX = (n * sumTX - sumT * sumX) / denominator;
+                velocityY = (n * sumTY - sumT * sumY) / denominator;
+            }
+        }
+
+        predictedX = lastX + velocityX * horizon;
+        predictedY = lastY + velocityY * horizon;
+
+        hasModel = mode != DragLayout.PredictionMode.NONE;
+        modelTime = lastTime;
+        modelX = lastX;
+        modelY = lastY;
+        modelVelocityX = velocityX;
+        modelVelocityY = velocityY;
+    }
+
+    float getPredictedX() {
+        return predictedX;
+    }
+
+    float getPredictedY() {
+        return predictedY;
+    }
+
+    float getLastError() {
+        return lastError;
+    }
+
+    float getAverageError() {
+        return averageError;
+    }
+}
@@ -0,0 +1,188 @@
+package com.biubiu.widget.layout;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * 拖拽代理，开始拖拽时把 DragLayout 的内容绘制到一张 Bitmap 上，放在父布局的 overlay 中，
+ * 拖拽过程中只移动这张 Bitmap，DragLayout 自己不动，也就不会重绘、不会引起 child 的 layout。
+ * <p>
+ * Bitmap 放在一个所有 DragLayout 共用的小缓存池中，尺寸够用就直接复用，每次拖拽不会新建 Bitmap。
+ * overlay 需要 API 18，更低的版本{@link #begin(View)}返回 false，由 DragLayout 直接移动自己。
+ * <p>
+ * 内容只能用软件 Canvas 绘制，API 26 开始如果内容中有 {@link Bitmap.Config#HARDWARE} 的 Bitmap
+ * （比如 Glide、Coil 默认加载的图片），绘制会抛出异常，这时{@link #begin(View)}同样返回 false。
+ */
+final class DragProxy extends Drawable {
+
+    // 缓存池最多保留的 Bitmap 数量
+    private static final int MAX_POOL_SIZE = 3;
+    private static final ArrayList<Bitmap> BITMAP_POOL = new ArrayList<>(MAX_POOL_SIZE);
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect srcRect = new Rect();
+    private final Canvas canvas = new Canvas();
+
+    private Bitmap bitmap;
+    private ViewGroup host;
+    private float x;
+    private float y;
+
+    /*把 view 绘制到 Bitmap 上并显示在父布局的 overlay 中，返回是否成功*/
+    boolean begin(@NonNull View view) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2 || !(view.getParent() instanceof ViewGroup)) {
+            return false;
+        }
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        bitmap = acquireBitmap(width, height);
+        bitmap.eraseColor(0);
+        canvas.setBitmap(bitmap);
+        // 和父布局绘制 child 时一样，先抵消 scroll
+        int saveCount = canvas.save();
+        canvas.translate(-view.getScrollX(), -view.getScrollY());
+        try {
+            view.draw(canvas);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // 软件 Canvas 不能绘制 HARDWARE Bitmap，放弃代理
+            releaseBitmap(bitmap);
+            bitmap = null;
+            return false;
+        } finally {
+            canvas.restoreToCount(saveCount);
+            canvas.setBitmap(null);
+        }
+        srcRect.set(0, 0, width, height);
+
+        host = (ViewGroup) view.getParent();
+        moveTo(view.getX(), view.getY());
+        addToOverlay(host, this);
+        return true;
+    }
+
+    /*移动 overlay 中的 Bitmap，坐标是父布局的坐标*/
+    void moveTo(float x, float y) {
+        this.x = x;
+        this.y = y;
+        int left = Math.round(x);
+        int top = Math.round(y);
+        setBounds(left, top, left + srcRect.width(), top + srcRect.height());
+        invalidateSelf();
+    }
+
+    float getX() {
+        return x;
+    }
+
+    float getY() {
+        return y;
+    }
+
+    /*从 overlay 中移除，Bitmap 还给缓存池*/
+    void end() {
+        if (host != null) {
+            removeFromOverlay(host, this);
+            host = null;
+        }
+        if (bitmap != null) {
+            releaseBitmap(bitmap);
+            bitmap = null;
+        }
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (bitmap != null) {
+            canvas.drawBitmap(bitmap, srcRect, getBounds(), paint);
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * 清空 Bitmap 缓存池，内存紧张时可以调用
+     */
+    static void clearPool() {
+        for (int i = 0; i < BITMAP_POOL.size(); i++) {
+            BITMAP_POOL.get(i).recycle();
+        }
+        BITMAP_POOL.clear();
+    }
+
+    /*从缓存池中取出能装下 width * height 的最小的 Bitmap，没有的话新建一个*/
+    private static Bitmap acquireBitmap(int width, int height) {
+        int best = -1;
+        for (int i = 0; i < BITMAP_POOL.size(); i++) {
+            Bitmap pooled = BITMAP_POOL.get(i);
+            if (pooled.getWidth() >= width && pooled.getHeight() >= height
+                    && (best == -1 || pooled.getByteCount() < BITMAP_POOL.get(best).getByteCount())) {
+                best = i;
+            }
+        }
+        if (best != -1) {
+            return BITMAP_POOL.remove(best);
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /*Bitmap 还给缓存池，池满了就替换掉最小的那个*/
+    private static void releaseBitmap(Bitmap bitmap) {
+        if (BITMAP_POOL.size() < MAX_POOL_SIZE) {
+            BITMAP_POOL.add(bitmap);
+            return;
+        }
+        int smallest = 0;
+        for (int i = 1; i < BITMAP_POOL.size(); i++) {
+            if (BITMAP_POOL.get(i).getByteCount() < BITMAP_POOL.get(smallest).getByteCount()) {
+                smallest = i;
+            }
+        }
+        if (BITMAP_POOL.get(smallest).getByteCount() < bitmap.getByteCount()) {
+            BITMAP_POOL.set(smallest, bitmap).recycle();
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void addToOverlay(ViewGroup host, Drawable drawable) {
+        host.getOverlay().add(drawable);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void removeFromOverlay(ViewGroup host, Drawable drawable) {
+        host.getOverlay().remove(drawable);
+    }
+}
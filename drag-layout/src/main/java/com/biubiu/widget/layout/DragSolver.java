@@ -0,0 +1,297 @@
+package com.biubiu.widget.layout;
+
+import android.os.Process;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在后台线程重新排布{@link DragCoordinator}中所有 child 的位置，比如放下之后消除重叠、紧凑地排列成网格。
+ * 通过{@link DragCoordinator#setDragSolver(DragSolver)}设置，每次 DragLayout 放下并停稳（惯性滑动、吸附结束）之后自动计算。
+ * <p>
+ * 主线程只把 child 的范围拷贝到基本类型数组中，计算在后台线程进行，
+ * 结果通过{@link AtomicReference}交回主线程，在下一帧用{@link DragLayout#animateTo(float, float)}移动到新的位置。
+ * 每次计算都有一个编号，新的拖拽开始或者新的计算开始时编号增加，旧的计算会尽早停止，结果也会被丢弃。
+ */
+public class DragSolver {
+
+    /**
+     * 排布算法，在后台线程调用，只能访问{@link Task}中的数据，不能访问 View
+     */
+    public interface Algorithm {
+
+        /*消除重叠：重叠的 DragLayout 沿着重叠最少的方向推开，放下的那个保持不动*/
+        Algorithm RESOLVE_OVERLAPS = new SolverAlgorithms.ResolveOverlaps();
+
+        /*紧凑的网格：按照从上到下、从左到右的顺序依次排进网格，放下的那个占据离它最近的格子*/
+        Algorithm COMPACT_GRID = new SolverAlgorithms.CompactGrid();
+
+        /**
+         * 计算新的位置，通过{@link Task#setPosition(int, float, float)}修改。
+         * 运行时间较长的算法需要定期检查{@link Task#isCancelled()}，被取消之后尽早返回。
+         */
+        void solve(@NonNull Task task);
+    }
+
+    /**
+     * 一次计算的输入和输出。坐标和 DragLayout 的{@link View#getX()}、{@link View#getY()}的含义相同。
+     */
+    public static final class Task {
+
+        private final DragSolver solver;
+        private final int generation;
+        private final int count;
+        private final float[] xs;
+        private final float[] ys;
+        private final float[] widths;
+        private final float[] heights;
+        private final boolean[] movables;
+        private final int pinned;
+        private final float boundsLeft;
+        private final float boundsTop;
+        private final float boundsRight;
+        private final float boundsBottom;
+        // 只在主线程访问
+        private float pinnedX;
+        private float pinnedY;
+        private final View[] views;
+        private final View host;
+
+        private Task(DragSolver solver, int generation, View host, int count, int pinned,
+                     float boundsLeft, float boundsTop, float boundsRight, float boundsBottom) {
+            this.solver = solver;
+            this.generation = generation;
+            this.host = host;
+            this.count = count;
+            this.pinned = pinned;
+            this.boundsLeft = boundsLeft;
+            this.boundsTop = boundsTop;
+            this.boundsRight = boundsRight;
+            this.boundsBottom = boundsBottom;
+            xs = new float[count];
+            ys = new float[count];
+            widths = new float[count];
+            heights = new float[count];
+            movables = new boolean[count];
+            views = new View[count];
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public float getX(int index) {
+            return xs[index];
+        }
+
+        public float getY(int index) {
+            return ys[index];
+        }
+
+        /**
+         * GONE 的 child 宽高都是 0、不能移动，算法应该忽略它
+         */
+        public float getWidth(int index) {
+            return widths[index];
+        }
+
+        public float getHeight(int index) {
+            return heights[index];
+        }
+
+        /**
+         * 只有 DragLayout 可以移动，其他 child 和刚放下的 DragLayout 都不能移动，只作为障碍物
+         */
+        public boolean isMovable(int index) {
+            return movables[index];
+        }
+
+        /**
+         * 刚放下的 DragLayout 的下标，没有时为 -1
+         */
+        public int getPinned() {
+            return pinned;
+        }
+
+        /*父布局去掉 padding 之后的范围*/
+        public float getBoundsLeft() {
+            return boundsLeft;
+        }
+
+        public float getBoundsTop() {
+            return boundsTop;
+        }
+
+        public float getBoundsRight() {
+            return boundsRight;
+        }
+
+        public float getBoundsBottom() {
+            return boundsBottom;
+        }
+
+        public void setPosition(int index, float x, float y) {
+            xs[index] = x;
+            ys[index] = y;
+        }
+
+        /**
+         * 是否已经有更新的计算或者新的拖拽，此时结果会被丢弃
+         */
+        public boolean isCancelled() {
+            return solver.generation.get() != generation;
+        }
+    }
+
+    // 所有 solver 共用的计算线程，空闲一段时间之后退出
+    private static ThreadPoolExecutor solveExecutor;
+
+    private Algorithm algorithm;
+    private final AtomicInteger generation = new AtomicInteger();
+    // 后台线程算完的结果，主线程在下一帧取走
+    private final AtomicReference<Task> solution = new AtomicReference<>();
+    private volatile long lastSolveNanos;
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applySolution();
+        }
+    };
+
+    public DragSolver(@NonNull Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public void setAlgorithm(@NonNull Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @NonNull
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 最近一次完成的计算在后台线程花费的时间，单位 ns
+     */
+    public long getLastSolveNanos() {
+        return lastSolveNanos;
+    }
+
+    /**
+     * 取消正在进行的计算，已经算完但还没有应用的结果也会被丢弃
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        solution.set(null);
+    }
+
+    /*在主线程拷贝 parent 中所有 child 的范围，然后交给后台线程计算*/
+    void solve(@NonNull DragCoordinator parent, View pinnedChild) {
+        final Task task = snapshot(parent, pinnedChild, generation.incrementAndGet());
+        final Algorithm algorithm = this.algorithm;
+        getSolveExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isCancelled()) {
+                    return;
+                }
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long startTime = System.nanoTime();
+                algorithm.solve(task);
+                if (task.isCancelled()) {
+                    return;
+                }
+                lastSolveNanos = System.nanoTime() - startTime;
+                solution.set(task);
+                ViewCompat.postOnAnimation(task.host, applyRunnable);
+            }
+        });
+    }
+
+    private Task snapshot(DragCoordinator parent, View pinnedChild, int generation) {
+        int count = parent.getChildCount();
+        int pinned = -1;
+        for (int i = 0; i < count; i++) {
+            if (parent.getChildAt(i) == pinnedChild) {
+                pinned = i;
+                break;
+            }
+        }
+        Task task = new Task(this, generation, parent, count, pinned,
+                parent.getPaddingLeft(), parent.getPaddingTop(),
+                parent.getWidth() - parent.getPaddingRight(), parent.getHeight() - parent.getPaddingBottom());
+        for (int i = 0; i < count; i++) {
+            View child = parent.getChildAt(i);
+            task.views[i] = child;
+            task.xs[i] = child.getX();
+            task.ys[i] = child.getY();
+            if (child.getVisibility() == View.GONE) {
+                // GONE 的 child 宽高还是上一次 layout 的值，当作空的范围，既不是障碍物也不占格子
+                continue;
+            }
+            task.widths[i] = child.getWidth();
+            task.heights[i] = child.getHeight();
+            task.movables[i] = i != pinned && child instanceof DragLayout;
+        }
+        if (pinned >= 0) {
+            task.pinnedX = task.xs[pinned];
+            task.pinnedY = task.ys[pinned];
+        }
+        return task;
+    }
+
+    /*主线程，用动画移动到算出的位置；计算期间又被拖拽或移除的 child 保持不动*/
+    private void applySolution() {
+        Task task = solution.getAndSet(null);
+        if (task == null || task.isCancelled()) {
+            return;
+        }
+        for (int i = 0; i < task.count; i++) {
+            View view = task.views[i];
+            if (!(view instanceof DragLayout) || view.getParent() != task.host) {
+                continue;
+            }
+            if (i == task.pinned) {
+                // 放下的 DragLayout 只在算法移动了它时（比如对齐到网格）才移动，否则可能还在惯性滑动、吸附
+                if (task.xs[i] == task.pinnedX && task.ys[i] == task.pinnedY) {
+                    continue;
+                }
+            } else if (!task.movables[i]) {
+                continue;
+            }
+            DragLayout child = (DragLayout) view;
+            if (child.isDragging()) {
+                continue;
+            }
+            if (task.xs[i] != child.getX() || task.ys[i] != child.getY()) {
+                child.animateTo(task.xs[i], task.ys[i]);
+            }
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getSolveExecutor() {
+        if (solveExecutor == null) {
+            // 单个线程就够了，同一时间只有最新的计算有意义
+            solveExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DragSolver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            solveExecutor.allowCoreThreadTimeOut(true);
+        }
+        return solveExecutor;
+    }
+}
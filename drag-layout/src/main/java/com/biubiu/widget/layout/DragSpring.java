@@ -0,0 +1,120 @@
+package com.biubiu.widget.layout;
+
+/**
+ * DragLayout 位置动画用的弹簧，同时计算 x、y 两个方向。
+ * 状态全部是基本类型，一个实例在多次动画之间复用。
+ * <p>
+ * 质量固定为 1，阻尼系数由刚度和阻尼比计算得到，阻尼比为 1 时没有回弹。
+ */
+final class DragSpring {
+
+    // 每一次积分的最大步长，单位 s，步长太大会导致数值不稳定
+    private static final float MAX_STEP = 0.004f;
+    // 一帧最多计算的时间，单位 s，避免卡顿之后一次跳太远
+    private static final float MAX_FRAME_TIME = 0.064f;
+    // 距离和速度都小于这两个值时，认为动画已经结束
+    private static final float POSITION_THRESHOLD = 0.5f;
+    private static final float VELOCITY_THRESHOLD = 10f;
+
+    private float stiffness;
+    private float dampingRatio;
+
+    private float x;
+    private float y;
+    private float velocityX;
+    private float velocityY;
+    private float targetX;
+    private float targetY;
+
+    private boolean running;
+    private long lastFrameTime;
+
+    void setStiffness(float stiffness) {
+        this.stiffness = stiffness;
+    }
+
+    float getStiffness() {
+        return stiffness;
+    }
+
+    void setDampingRatio(float dampingRatio) {
+        this.dampingRatio = dampingRatio;
+    }
+
+    float getDampingRatio() {
+        return dampingRatio;
+    }
+
+    /**
+     * 从 (fromX, fromY) 开始向 (toX, toY) 运动。
+     * 如果动画正在进行，保留当前的速度，这样中途改变目标不会有突变。
+     */
+    void start(float fromX, float fromY, float toX, float toY, long frameTime) {
+        if (!running) {
+            velocityX = 0;
+            velocityY = 0;
+        }
+        x = fromX;
+        y = fromY;
+        targetX = toX;
+        targetY = toY;
+        lastFrameTime = frameTime;
+        running = true;
+    }
+
+    void stop() {
+        running = false;
+        velocityX = 0;
+        velocityY = 0;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 计算到 frameTime 时的位置
+     *
+     * @return 动画是否还在继续
+     */
+    boolean step(long frameTime) {
+        if (!running) {
+            return false;
+        }
+        float time = Math.min((frameTime - lastFrameTime) / 1000f, MAX_FRAME_TIME);
+        lastFrameTime = frameTime;
+        float damping = 2 * dampingRatio * (float) Math.sqrt(stiffness);
+        while (time > 0) {
+            float dt = Math.min(time, MAX_STEP);
+            // 半隐式欧拉积分
+            velocityX += (-stiffness * (x - targetX) - damping * velocityX) * dt;
+            velocityY += (-stiffness * (y - targetY) - damping * velocityY) * dt;
+            x += velocityX * dt;
+            y += velocityY * dt;
+            time -= dt;
+        }
+        if (Math.abs(x - targetX) < POSITION_THRESHOLD && Math.abs(y - targetY) < POSITION_THRESHOLD
+                && Math.abs(velocityX) < VELOCITY_THRESHOLD && Math.abs(velocityY) < VELOCITY_THRESHOLD) {
+            x = targetX;
+            y = targetY;
+            stop();
+        }
+        return running;
+    }
+
+    float getX() {
+        return x;
+    }
+
+    float getY() {
+        return y;
+    }
+
+    float getTargetX() {
+        return targetX;
+    }
+
+    float getTargetY() {
+        return targetY;
+    }
+}
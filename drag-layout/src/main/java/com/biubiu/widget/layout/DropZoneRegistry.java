@@ -0,0 +1,227 @@
+package com.biubiu.widget.layout;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * 放置区域（drop zone）的注册表，通过{@link DragLayout#setDropZoneRegistry(DropZoneRegistry)}交给 DragLayout 使用，
+ * 多个 DragLayout 可以共用同一个注册表，但同一时间只跟踪一个正在拖拽的 DragLayout。
+ * <p>
+ * 区域的坐标和 DragLayout 的{@link View#getX()}、{@link View#getY()}在同一个坐标系，也就是 DragLayout 父布局的坐标系；
+ * 用 View 注册的区域会在每次开始拖拽的时候换算到这个坐标系。
+ * 拖拽过程中以 DragLayout 的中心点做命中检测，区域保存在网格索引中，
+ * 每次移动只查询中心点所在的格子，并且只在命中的区域发生变化时回调{@link OnDropZoneListener#onEnter(View, int)}、
+ * {@link OnDropZoneListener#onExit(View, int)}；抬手时对命中的区域回调{@link OnDropZoneListener#onDrop(View, int)}。
+ */
+public class DropZoneRegistry {
+
+    public interface OnDropZoneListener {
+        /*拖拽的 DragLayout 进入了区域*/
+        void onEnter(View view, int zone);
+
+        /*拖拽的 DragLayout 离开了区域*/
+        void onExit(View view, int zone);
+
+        /*在区域内抬手，之后不会再回调 onExit*/
+        void onDrop(View view, int zone);
+    }
+
+    // 区域网格的格子大小，单位 dp
+    private static final float CELL_SIZE = 64;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final SpatialGrid zones;
+    // 下标是区域的 id
+    private OnDropZoneListener[] listeners = new OnDropZoneListener[DEFAULT_CAPACITY];
+    private View[] zoneViews = new View[DEFAULT_CAPACITY];
+
+    // 正在拖拽的 DragLayout 和它的父布局
+    private View dragView;
+    private View dragParent;
+    // 上一次移动命中的区域
+    private int[] hits = new int[DEFAULT_CAPACITY];
+    private int hitCount;
+    // 本次查询的结果，先拷贝出来，回调中再查询网格也不会影响
+    private int[] queryResults = new int[DEFAULT_CAPACITY];
+    // 标记区域是否在本次命中的结果中，避免两次命中结果之间的 O(n²) 比较
+    private int[] hitStamps = new int[DEFAULT_CAPACITY];
+    private int stamp;
+    // 换算 View 区域坐标用
+    private final int[] parentLocation = new int[2];
+    private final int[] zoneLocation = new int[2];
+
+    public DropZoneRegistry(@NonNull Context context) {
+        zones = new SpatialGrid(CELL_SIZE * context.getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * 注册一个矩形区域
+     *
+     * @return 区域的 id，删除之前一直有效
+     */
+    public int addZone(float left, float top, float right, float bottom, @NonNull OnDropZoneListener listener) {
+        int zone = zones.add(Math.min(left, right), Math.min(top, bottom),
+                Math.max(left, right), Math.max(top, bottom));
+        ensureCapacity(zone + 1);
+        listeners[zone] = listener;
+        zoneViews[zone] = null;
+        return zone;
+    }
+
+    /**
+     * 用一个 View 的范围注册区域，范围在每次开始拖拽时更新
+     *
+     * @return 区域的 id，删除之前一直有效
+     */
+    public int addZone(@NonNull View view, @NonNull OnDropZoneListener listener) {
+        int zone = addZone(0, 0, 0, 0, listener);
+        zoneViews[zone] = view;
+        return zone;
+    }
+
+    /**
+     * 修改矩形区域的范围，拖拽过程中也可以调用
+     */
+    public void updateZone(int zone, float left, float top, float right, float bottom) {
+        zones.update(zone, Math.min(left, right), Math.min(top, bottom),
+                Math.max(left, right), Math.max(top, bottom));
+    }
+
+    /**
+     * 删除区域，如果拖拽的 DragLayout 正在这个区域内，不会回调 onExit
+     */
+    public void removeZone(int zone) {
+        if (!zones.isAlive(zone)) {
+            return;
+        }
+        zones.remove(zone);
+        listeners[zone] = null;
+        zoneViews[zone] = null;
+        for (int i = 0; i < hitCount; i++) {
+            if (hits[i] == zone) {
+                hits[i] = hits[--hitCount];
+                break;
+            }
+        }
+    }
+
+    public void clear() {
+        zones.clear();
+        Arrays.fill(listeners, null);
+        Arrays.fill(zoneViews, null);
+        hitCount = 0;
+    }
+
+    /*开始拖拽，更新网格的范围和用 View 注册的区域*/
+    void begin(View view) {
+        dragView = view;
+        dragParent = view.getParent() instanceof View ? (View) view.getParent() : null;
+        hitCount = 0;
+        if (dragParent == null) {
+            return;
+        }
+        zones.setWorld(0, 0, dragParent.getWidth(), dragParent.getHeight());
+        dragParent.getLocationInWindow(parentLocation);
+        for (int zone = 0; zone < zoneViews.length; zone++) {
+            View zoneView = zoneViews[zone];
+            if (zoneView == null || !zones.isAlive(zone)) {
+                continue;
+            }
+            zoneView.getLocationInWindow(zoneLocation);
+            float left = zoneLocation[0] - parentLocation[0];
+            float top = zoneLocation[1] - parentLocation[1];
+            zones.update(zone, left, top, left + zoneView.getWidth(), top + zoneView.getHeight());
+        }
+    }
+
+    /*拖拽的 DragLayout 移动到 (x, y) 之后更新命中的区域*/
+    void update(View view, float x, float y) {
+        if (view != dragView || dragParent == null) {
+            return;
+        }
+        int count = zones.queryPoint(x + view.getWidth() / 2f, y + view.getHeight() / 2f);
+        if (queryResults.length < count) {
+            queryResults = new int[Math.max(count, queryResults.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            queryResults[i] = zones.getResult(i);
+        }
+
+        // 先把本次命中的区域标记出来
+        nextStamp();
+        for (int i = 0; i < count; i++) {
+            hitStamps[queryResults[i]] = stamp;
+        }
+        // 上次命中、这次没有命中的区域离开了
+        for (int i = hitCount - 1; i >= 0; i--) {
+            int zone = hits[i];
+            if (hitStamps[zone] != stamp) {
+                hits[i] = hits[--hitCount];
+                listeners[zone].onExit(view, zone);
+            } else {
+                // 上次已经命中过的区域，标记清掉，剩下的就是新进入的区域
+                hitStamps[zone] = 0;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int zone = queryResults[i];
+            if (hitStamps[zone] == stamp) {
+                if (hitCount == hits.length) {
+                    hits = Arrays.copyOf(hits, hitCount * 2);
+                }
+                hits[hitCount++] = zone;
+                listeners[zone].onEnter(view, zone);
+            }
+        }
+    }
+
+    /*抬手，命中的区域回调 onDrop*/
+    void drop(View view) {
+        if (view != dragView) {
+            return;
+        }
+        for (int i = 0; i < hitCount; i++) {
+            int zone = hits[i];
+            listeners[zone].onDrop(view, zone);
+        }
+        hitCount = 0;
+        dragView = null;
+        dragParent = null;
+    }
+
+    /*拖拽被打断，没有放下，命中的区域回调 onExit*/
+    void cancel(View view) {
+        if (view != dragView) {
+            return;
+        }
+        for (int i = 0; i < hitCount; i++) {
+            int zone = hits[i];
+            listeners[zone].onExit(view, zone);
+        }
+        hitCount = 0;
+        dragView = null;
+        dragParent = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= listeners.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, listeners.length * 2);
+        listeners = Arrays.copyOf(listeners, newCapacity);
+        zoneViews = Arrays.copyOf(zoneViews, newCapacity);
+        hitStamps = Arrays.copyOf(hitStamps, newCapacity);
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(hitStamps, 0);
+            stamp = 1;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.biubiu.widget.layout;
+
+import android.view.MotionEvent;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * 一个手势的事件轨迹，用{@link GestureTraceRecorder}在真机上录制，可以写成二进制文件之后在 JVM 上回放。
+ * <p>
+ * 记录 ACTION_DOWN、ACTION_MOVE、ACTION_UP、ACTION_CANCEL 以及 ACTION_POINTER_DOWN、ACTION_POINTER_UP，
+ * 每个事件带有所有手指的 id 和坐标，可以回放换手指、多指拖拽的手势；historical 采样点不记录。
+ * 坐标是 ACTION_DOWN 时 DragLayout 的坐标系，拖拽过程中 DragLayout 移动了也不会影响之后的坐标；
+ * 时间是相对于 ACTION_DOWN 的毫秒数。
+ * <p>
+ * 二进制格式（big-endian）：
+ * <pre>
+ * int   magic，固定为 'DLGT'
+ * byte  version，当前为 2
+ * int   录制时 DragLayout 的宽、高
+ * int   事件个数 n
+ * n 个 { byte action; byte actionIndex; int time; byte pointerCount; pointerCount 个 { byte id; float x; float y; } }
+ * </pre>
+ * action 是不包括手指下标的 action，actionIndex 是 ACTION_POINTER_DOWN、ACTION_POINTER_UP 的手指下标。
+ * 版本 1 的数据只有单指，每个事件是 { byte action; int time; float x; float y; }，依然可以读取。
+ * 多个轨迹可以直接拼接在同一个文件中。
+ */
+public final class GestureTrace {
+
+    private static final int MAGIC = 0x444C4754;
+    private static final byte VERSION_SINGLE_POINTER = 1;
+    private static final byte VERSION = 2;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int width;
+    private int height;
+
+    // 每个事件一项，action 包括手指下标
+    private int[] actions = new int[DEFAULT_CAPACITY];
+    private int[] times = new int[DEFAULT_CAPACITY];
+    // 这个事件的手指在下面的手指数组中从哪里开始、有几个
+    private int[] pointerStarts = new int[DEFAULT_CAPACITY];
+    private int[] pointerCounts = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    // 每个事件的每根手指一项
+    private int[] pointerIds = new int[DEFAULT_CAPACITY];
+    private float[] xs = new float[DEFAULT_CAPACITY];
+    private float[] ys = new float[DEFAULT_CAPACITY];
+    private int pointerSize;
+
+    // 重建事件用的，手指数超过长度时才扩容
+    private MotionEvent.PointerProperties[] pointerProperties = new MotionEvent.PointerProperties[0];
+    private MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[0];
+
+    public GestureTrace() {
+    }
+
+    public GestureTrace(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 添加一个单指事件，手指的 id 是 0
+     *
+     * @param action ACTION_DOWN、ACTION_MOVE、ACTION_UP 或 ACTION_CANCEL
+     * @param time   相对于 ACTION_DOWN 的时间，单位 ms
+     */
+    public void add(int action, int time, float x, float y) {
+        if (!isSinglePointerAction(action)) {
+            throw new IllegalArgumentException("不支持的 action：" + action);
+        }
+        ensureCapacity(size + 1);
+        ensurePointerCapacity(pointerSize + 1);
+        pointerIds[pointerSize] = 0;
+        xs[pointerSize] = x;
+        ys[pointerSize] = y;
+        addEvent(action, time, 1);
+    }
+
+    /**
+     * 添加一个多指事件
+     *
+     * @param action       和{@link MotionEvent#getAction()}相同，ACTION_POINTER_DOWN、ACTION_POINTER_UP 包括手指下标
+     * @param time         相对于 ACTION_DOWN 的时间，单位 ms
+     * @param pointerCount 手指的个数，ids、xs、ys 的前 pointerCount 项有效
+     */
+    public void add(int action, int time, int pointerCount, @NonNull int[] ids, @NonNull float[] xs, @NonNull float[] ys) {
+        if (!isMultiPointerAction(action & MotionEvent.ACTION_MASK)) {
+            throw new IllegalArgumentException("不支持的 action：" + action);
+        }
+        int actionIndex = (action & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+        if (pointerCount < 1 || actionIndex >= pointerCount) {
+            throw new IllegalArgumentException("手指个数不对：" + pointerCount + "，action：" + action);
+        }
+        ensureCapacity(size + 1);
+        ensurePointerCapacity(pointerSize + pointerCount);
+        System.arraycopy(ids, 0, pointerIds, pointerSize, pointerCount);
+        System.arraycopy(xs, 0, this.xs, pointerSize, pointerCount);
+        System.arraycopy(ys, 0, this.ys, pointerSize, pointerCount);
+        addEvent(action, time, pointerCount);
+    }
+
+    private static boolean isSinglePointerAction(int action) {
+        return action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE
+                || action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL;
+    }
+
+    /*action 不包括手指下标*/
+    private static boolean isMultiPointerAction(int action) {
+        return isSinglePointerAction(action)
+                || action == MotionEvent.ACTION_POINTER_DOWN || action == MotionEvent.ACTION_POINTER_UP;
+    }
+
+    /*手指已经写到 pointerSize 之后，记录事件本身*/
+    private void addEvent(int action, int time, int pointerCount) {
+        actions[size] = action;
+        times[size] = time;
+        pointerStarts[size] = pointerSize;
+        pointerCounts[size] = pointerCount;
+        pointerSize += pointerCount;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+        pointerSize = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /*和{@link MotionEvent#getAction()}相同，包括手指下标*/
+    public int getAction(int index) {
+        return actions[index];
+    }
+
+    public int getTime(int index) {
+        return times[index];
+    }
+
+    public int getPointerCount(int index) {
+        return pointerCounts[index];
+    }
+
+    public int getPointerId(int index, int pointerIndex) {
+        return pointerIds[pointerStarts[index] + pointerIndex];
+    }
+
+    /*第一根手指的 x*/
+    public float getX(int index) {
+        return getX(index, 0);
+    }
+
+    /*第一根手指的 y*/
+    public float getY(int index) {
+        return getY(index, 0);
+    }
+
+    public float getX(int index, int pointerIndex) {
+        return xs[pointerStarts[index] + pointerIndex];
+    }
+
+    public float getY(int index, int pointerIndex) {
+        return ys[pointerStarts[index] + pointerIndex];
+    }
+
+    /**
+     * 重建第 index 个事件，用完之后需要 recycle
+     *
+     * @param downTime 回放时 ACTION_DOWN 的时间，和{@link android.os.SystemClock#uptimeMillis()}是同一个时间基准
+     */
+    @NonNull
+    public MotionEvent obtainEvent(int index, long downTime) {
+        int pointerCount = pointerCounts[index];
+        ensurePointerObjects(pointerCount);
+        for (int k = 0; k < pointerCount; k++) {
+            int p = pointerStarts[index] + k;
+            MotionEvent.PointerProperties properties = pointerProperties[k];
+            properties.clear();
+            properties.id = pointerIds[p];
+            properties.toolType = MotionEvent.TOOL_TYPE_FINGER;
+            MotionEvent.PointerCoords coords = pointerCoords[k];
+            coords.clear();
+            coords.x = xs[p];
+            coords.y = ys[p];
+            coords.pressure = 1;
+            coords.size = 1;
+        }
+        return MotionEvent.obtain(downTime, downTime + times[index], actions[index], pointerCount,
+                pointerProperties, pointerCoords, 0, 0, 1f, 1f, 0, 0, 0, 0);
+    }
+
+    public void writeTo(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int action = actions[i];
+            out.writeByte(action & MotionEvent.ACTION_MASK);
+            out.writeByte((action & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            out.writeInt(times[i]);
+            out.writeByte(pointerCounts[i]);
+            for (int k = 0; k < pointerCounts[i]; k++) {
+                int p = pointerStarts[i] + k;
+                out.writeByte(pointerIds[p]);
+                out.writeFloat(xs[p]);
+                out.writeFloat(ys[p]);
+            }
+        }
+    }
+
+    /**
+     * 读取一个轨迹
+     *
+     * @throws IOException 格式不对或者数据不完整，事件本身不合法（比如 action 损坏）时是{@link StreamCorruptedException}
+     */
+    @NonNull
+    public static GestureTrace readFrom(@NonNull DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是 GestureTrace 的数据");
+        }
+        byte version = in.readByte();
+        if (version != VERSION && version != VERSION_SINGLE_POINTER) {
+            throw new IOException("不支持的 GestureTrace 版本：" + version);
+        }
+        GestureTrace trace = new GestureTrace(in.readInt(), in.readInt());
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("事件个数不能小于 0：" + count);
+        }
+        trace.ensureCapacity(count);
+        if (version == VERSION_SINGLE_POINTER) {
+            for (int i = 0; i < count; i++) {
+                int action = in.readByte();
+                if (!isSinglePointerAction(action)) {
+                    throw new StreamCorruptedException("第 " + i + " 个事件的 action 不合法：" + action);
+                }
+                trace.add(action, in.readInt(), in.readFloat(), in.readFloat());
+            }
+            return trace;
+        }
+        int[] ids = new int[0];
+        float[] xs = new float[0];
+        float[] ys = new float[0];
+        for (int i = 0; i < count; i++) {
+            int action = in.readUnsignedByte();
+            int actionIndex = in.readUnsignedByte();
+            int time = in.readInt();
+            int pointerCount = in.readUnsignedByte();
+            if (!isMultiPointerAction(action)) {
+                throw new StreamCorruptedException("第 " + i + " 个事件的 action 不合法：" + action);
+            }
+            if (pointerCount < 1 || actionIndex >= pointerCount) {
+                throw new StreamCorruptedException("第 " + i + " 个事件的手指个数不合法：" + pointerCount
+                        + "，actionIndex：" + actionIndex);
+            }
+            if (pointerCount > ids.length) {
+                ids = new int[pointerCount];
+                xs = new float[pointerCount];
+                ys = new float[pointerCount];
+            }
+            for (int k = 0; k < pointerCount; k++) {
+                ids[k] = in.readUnsignedByte();
+                xs[k] = in.readFloat();
+                ys[k] = in.readFloat();
+            }
+            trace.add(action | (actionIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT), time, pointerCount, ids, xs, ys);
+        }
+        return trace;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= actions.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, actions.length * 2);
+        actions = Arrays.copyOf(actions, newCapacity);
+        times = Arrays.copyOf(times, newCapacity);
+        pointerStarts = Arrays.copyOf(pointerStarts, newCapacity);
+        pointerCounts = Arrays.copyOf(pointerCounts, newCapacity);
+    }
+
+    private void ensurePointerCapacity(int capacity) {
+        if (capacity <= pointerIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, pointerIds.length * 2);
+        pointerIds = Arrays.copyOf(pointerIds, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+    }
+
+    private void ensurePointerObjects(int count) {
+        if (count <= pointerProperties.length) {
+            return;
+        }
+        MotionEvent.PointerProperties[] newProperties = Arrays.copyOf(pointerProperties, count);
+        MotionEvent.PointerCoords[] newCoords = Arrays.copyOf(pointerCoords, count);
+        for (int k = pointerProperties.length; k < count; k++) {
+            newProperties[k] = new MotionEvent.PointerProperties();
+            newCoords[k] = new MotionEvent.PointerCoords();
+        }
+        pointerProperties = newProperties;
+        pointerCoords = newCoords;
+    }
+}
@@ -0,0 +1,71 @@
+package com.biubiu.widget.layout;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 录制 DragLayout 收到的手势，通过{@link DragLayout#setGestureTraceRecorder(GestureTraceRecorder)}设置。
+ * 每个手势结束（ACTION_UP、ACTION_CANCEL）时回调{@link OnTraceListener#onTrace(View, GestureTrace)}，
+ * 可以在回调中用{@link GestureTrace#writeTo(java.io.DataOutputStream)}保存下来，之后在 JVM 上回放。
+ */
+public class GestureTraceRecorder {
+
+    public interface OnTraceListener {
+        /*回调返回之后 trace 会被清空，用来录制下一个手势*/
+        void onTrace(View view, GestureTrace trace);
+    }
+
+    private final OnTraceListener onTraceListener;
+    private final GestureTrace trace = new GestureTrace();
+    private boolean isRecording;
+    private long downTime;
+    // ACTION_DOWN 时 raw 坐标和 DragLayout 坐标的差
+    private float offsetX;
+    private float offsetY;
+    // 一个事件所有手指的 id 和坐标，手指数超过长度时才扩容
+    private int[] pointerIds = new int[0];
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+
+    public GestureTraceRecorder(@NonNull OnTraceListener onTraceListener) {
+        this.onTraceListener = onTraceListener;
+    }
+
+    /*记录 DragLayout 收到的事件，在事件被处理之前调用*/
+    void record(View view, MotionEvent event) {
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            trace.clear();
+            trace.setSize(view.getWidth(), view.getHeight());
+            isRecording = true;
+            downTime = event.getDownTime();
+            offsetX = event.getRawX() - event.getX();
+            offsetY = event.getRawY() - event.getY();
+        }
+        if (!isRecording) {
+            return;
+        }
+        int pointerCount = event.getPointerCount();
+        if (pointerCount > pointerIds.length) {
+            pointerIds = new int[pointerCount];
+            xs = new float[pointerCount];
+            ys = new float[pointerCount];
+        }
+        // 用 raw 坐标换算，拖拽过程中 DragLayout 移动了也保持在 ACTION_DOWN 时的坐标系
+        float dx = event.getRawX() - event.getX() - offsetX;
+        float dy = event.getRawY() - event.getY() - offsetY;
+        for (int i = 0; i < pointerCount; i++) {
+            pointerIds[i] = event.getPointerId(i);
+            xs[i] = event.getX(i) + dx;
+            ys[i] = event.getY(i) + dy;
+        }
+        trace.add(event.getAction(), (int) (event.getEventTime() - downTime), pointerCount, pointerIds, xs, ys);
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            isRecording = false;
+            onTraceListener.onTrace(view, trace);
+            trace.clear();
+        }
+    }
+}
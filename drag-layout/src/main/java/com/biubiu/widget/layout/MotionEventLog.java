@@ -0,0 +1,219 @@
+package com.biubiu.widget.layout;
+
+import android.view.MotionEvent;
+
+/**
+ * DragLayout 用来缓存 MotionEvent 的事件日志。
+ * 不再保存 MotionEvent 的拷贝，而是把每个事件拆成几个基本类型数组（struct-of-arrays），
+ * 只有在真正需要回放的时候才重新构建 MotionEvent，用完之后立即 recycle。
+ * 数组在多次手势之间复用，只有容量不够的时候才会扩容，因此稳定之后记录事件不会产生任何分配。
+ * <p>
+ * 所有手指都会记录，包括 ACTION_POINTER_DOWN/ACTION_POINTER_UP，
+ * 回放给 child 的多点事件和之后直接透传的事件是连续的；只有 historical 采样点不记录。
+ * 同时记录每个事件 raw 坐标和本地坐标的差，重建的事件 getRawX()/getRawY() 和原来的事件一致。
+ */
+final class MotionEventLog {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // 当前手势 ACTION_DOWN 的时间，所有重建的事件共用
+    private long downTime;
+
+    // 每个事件一项
+    private long[] eventTimes = new long[DEFAULT_CAPACITY];
+    // 完整的 action，包括 ACTION_POINTER_DOWN/ACTION_POINTER_UP 的手指下标
+    private int[] actions = new int[DEFAULT_CAPACITY];
+    private int[] metaStates = new int[DEFAULT_CAPACITY];
+    private int[] buttonStates = new int[DEFAULT_CAPACITY];
+    private int[] deviceIds = new int[DEFAULT_CAPACITY];
+    private int[] edgeFlags = new int[DEFAULT_CAPACITY];
+    private int[] sources = new int[DEFAULT_CAPACITY];
+    private int[] flags = new int[DEFAULT_CAPACITY];
+    // 这个事件的手指在下面的手指数组中从哪里开始、有几个
+    private int[] pointerStarts = new int[DEFAULT_CAPACITY];
+    private int[] pointerCounts = new int[DEFAULT_CAPACITY];
+    // getRawX() - getX() 和 getRawY() - getY()，也就是本地坐标系在屏幕上的偏移
+    private float[] rawOffsetXs = new float[DEFAULT_CAPACITY];
+    private float[] rawOffsetYs = new float[DEFAULT_CAPACITY];
+
+    // 每个事件的每根手指一项
+    private int[] pointerIds = new int[DEFAULT_CAPACITY];
+    private int[] toolTypes = new int[DEFAULT_CAPACITY];
+    private float[] xs = new float[DEFAULT_CAPACITY];
+    private float[] ys = new float[DEFAULT_CAPACITY];
+    private float[] pressures = new float[DEFAULT_CAPACITY];
+    private float[] sizes = new float[DEFAULT_CAPACITY];
+    private int pointerSize;
+
+    // 重建事件用的，手指数超过长度时才扩容
+    private MotionEvent.PointerProperties[] pointerProperties = new MotionEvent.PointerProperties[0];
+    private MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[0];
+
+    // head 之前的事件已经被消费（回放）掉了
+    private int head;
+    private int size;
+
+    /*记录一个事件的所有手指*/
+    void add(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            downTime = event.getDownTime();
+        }
+        int pointerCount = event.getPointerCount();
+        ensureCapacity(size + 1);
+        ensurePointerCapacity(pointerSize + pointerCount);
+        eventTimes[size] = event.getEventTime();
+        actions[size] = event.getAction();
+        metaStates[size] = event.getMetaState();
+        buttonStates[size] = event.getButtonState();
+        deviceIds[size] = event.getDeviceId();
+        edgeFlags[size] = event.getEdgeFlags();
+        sources[size] = event.getSource();
+        flags[size] = event.getFlags();
+        pointerStarts[size] = pointerSize;
+        pointerCounts[size] = pointerCount;
+        rawOffsetXs[size] = event.getRawX() - event.getX();
+        rawOffsetYs[size] = event.getRawY() - event.getY();
+        for (int i = 0; i < pointerCount; i++) {
+            int p = pointerSize + i;
+            pointerIds[p] = event.getPointerId(i);
+            toolTypes[p] = event.getToolType(i);
+            xs[p] = event.getX(i);
+            ys[p] = event.getY(i);
+            pressures[p] = event.getPressure(i);
+            sizes[p] = event.getSize(i);
+        }
+        pointerSize += pointerCount;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return head >= size;
+    }
+
+    /*还没有被消费的事件个数*/
+    int size() {
+        return size - head;
+    }
+
+    /*第 index 个未消费事件的时间，index 从 0 开始*/
+    long getEventTime(int index) {
+        return eventTimes[head + index];
+    }
+
+    /*第一个未消费事件的 action，不包括手指下标*/
+    int peekAction() {
+        return actions[head] & MotionEvent.ACTION_MASK;
+    }
+
+    /**
+     * 重建第一个未消费的事件，调用方用完之后必须 recycle。
+     * 先按屏幕坐标构建，再平移回本地坐标，和 DragCoordinator 拆分事件的做法一样，这样 raw 坐标才是对的。
+     */
+    MotionEvent obtainHead() {
+        int i = head;
+        int pointerCount = pointerCounts[i];
+        float dx = rawOffsetXs[i];
+        float dy = rawOffsetYs[i];
+        ensurePointerObjects(pointerCount);
+        for (int k = 0; k < pointerCount; k++) {
+            int p = pointerStarts[i] + k;
+            MotionEvent.PointerProperties properties = pointerProperties[k];
+            properties.id = pointerIds[p];
+            properties.toolType = toolTypes[p];
+            MotionEvent.PointerCoords coords = pointerCoords[k];
+            coords.clear();
+            coords.x = xs[p] + dx;
+            coords.y = ys[p] + dy;
+            coords.pressure = pressures[p];
+            coords.size = sizes[p];
+        }
+        MotionEvent event = MotionEvent.obtain(downTime, eventTimes[i], actions[i], pointerCount,
+                pointerProperties, pointerCoords, metaStates[i], buttonStates[i],
+                1f, 1f, deviceIds[i], edgeFlags[i], sources[i], flags[i]);
+        event.offsetLocation(-dx, -dy);
+        return event;
+    }
+
+    /*消费掉第一个未消费的事件*/
+    void poll() {
+        if (head < size) {
+            head++;
+        }
+        if (head >= size) {
+            clear();
+        }
+    }
+
+    /*清空日志，数组保留下来给下一次手势复用*/
+    void clear() {
+        head = 0;
+        size = 0;
+        pointerSize = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= eventTimes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, eventTimes.length * 2);
+        eventTimes = grow(eventTimes, newCapacity);
+        actions = grow(actions, newCapacity);
+        metaStates = grow(metaStates, newCapacity);
+        buttonStates = grow(buttonStates, newCapacity);
+        deviceIds = grow(deviceIds, newCapacity);
+        edgeFlags = grow(edgeFlags, newCapacity);
+        sources = grow(sources, newCapacity);
+        flags = grow(flags, newCapacity);
+        pointerStarts = grow(pointerStarts, newCapacity);
+        pointerCounts = grow(pointerCounts, newCapacity);
+        rawOffsetXs = grow(rawOffsetXs, newCapacity);
+        rawOffsetYs = grow(rawOffsetYs, newCapacity);
+    }
+
+    private void ensurePointerCapacity(int capacity) {
+        if (capacity <= pointerIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, pointerIds.length * 2);
+        pointerIds = grow(pointerIds, newCapacity);
+        toolTypes = grow(toolTypes, newCapacity);
+        xs = grow(xs, newCapacity);
+        ys = grow(ys, newCapacity);
+        pressures = grow(pressures, newCapacity);
+        sizes = grow(sizes, newCapacity);
+    }
+
+    private void ensurePointerObjects(int count) {
+        if (count <= pointerProperties.length) {
+            return;
+        }
+        MotionEvent.PointerProperties[] newProperties = new MotionEvent.PointerProperties[count];
+        MotionEvent.PointerCoords[] newCoords = new MotionEvent.PointerCoords[count];
+        System.arraycopy(pointerProperties, 0, newProperties, 0, pointerProperties.length);
+        System.arraycopy(pointerCoords, 0, newCoords, 0, pointerCoords.length);
+        for (int k = pointerProperties.length; k < count; k++) {
+            newProperties[k] = new MotionEvent.PointerProperties();
+            newCoords[k] = new MotionEvent.PointerCoords();
+        }
+        pointerProperties = newProperties;
+        pointerCoords = newCoords;
+    }
+
+    private static long[] grow(long[] array, int capacity) {
+        long[] newArray = new long[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        float[] newArray = new float[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -0,0 +1,90 @@
+package com.biubiu.widget.layout;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * {@link DragLayout.MovementStrategy}的内置实现
+ */
+final class MovementStrategies {
+
+    private MovementStrategies() {
+    }
+
+    /**
+     * 修改 translation，不会引起 layout，但父布局重新 layout 之后 translation 依然保留，位置不会丢失
+     */
+    static final class Translation implements DragLayout.MovementStrategy {
+
+        @Override
+        public void moveTo(View view, float x, float y) {
+            view.setX(x);
+            view.setY(y);
+        }
+
+        @Override
+        public void commit(View view) {
+        }
+    }
+
+    /**
+     * 直接修改 left、top、right、bottom，不会引起 layout，
+     * 只能移动整像素，并且父布局重新 layout 之后位置会恢复
+     */
+    static final class Offset implements DragLayout.MovementStrategy {
+
+        @Override
+        public void moveTo(View view, float x, float y) {
+            // 按目标位置取整，而不是按这一次的位移取整，不足一个像素的部分由 DragLayout 记住的目标位置累积下来
+            int dX = Math.round(x - view.getTranslationX()) - view.getLeft();
+            int dY = Math.round(y - view.getTranslationY()) - view.getTop();
+            if (dX != 0) {
+                view.offsetLeftAndRight(dX);
+            }
+            if (dY != 0) {
+                view.offsetTopAndBottom(dY);
+            }
+        }
+
+        @Override
+        public void commit(View view) {
+        }
+    }
+
+    /**
+     * 拖拽过程中修改 translation，提交的时候把整像素部分转移到 leftMargin、topMargin 上，
+     * 父布局重新 layout 之后依然在最终的位置。
+     * 要求父布局按照左上角的 margin 来摆放 child，例如默认 gravity 的 FrameLayout、没有对齐规则的 RelativeLayout。
+     */
+    static final class LayoutParams implements DragLayout.MovementStrategy {
+
+        @Override
+        public void moveTo(View view, float x, float y) {
+            view.setX(x);
+            view.setY(y);
+        }
+
+        @Override
+        public void commit(View view) {
+            if (!(view.getLayoutParams() instanceof ViewGroup.MarginLayoutParams)) {
+                return;
+            }
+            float translationX = view.getTranslationX();
+            float translationY = view.getTranslationY();
+            int dX = Math.round(translationX);
+            int dY = Math.round(translationY);
+            if (dX == 0 && dY == 0) {
+                return;
+            }
+            ViewGroup.MarginLayoutParams params = (ViewGroup.MarginLayoutParams) view.getLayoutParams();
+            params.leftMargin += dX;
+            params.topMargin += dY;
+            // 在下一次 layout 之前先把位置挪过去，layout 之后 translation 只剩下不足一个像素的部分
+            view.offsetLeftAndRight(dX);
+            view.offsetTopAndBottom(dY);
+            view.setTranslationX(translationX - dX);
+            view.setTranslationY(translationY - dY);
+            view.setLayoutParams(params);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.biubiu.widget.layout;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * 障碍物约束，拖拽的 DragLayout 不能和障碍物重叠，碰到障碍物之后会沿着障碍物的边缘滑动。
+ * 通过{@link DragLayout#setDragConstraint(DragLayout.DragConstraint)}交给 DragLayout 使用，可以被多个 DragLayout 共用。
+ * <p>
+ * 障碍物的坐标和 DragLayout 的{@link View#getX()}、{@link View#getY()}在同一个坐标系，也就是父布局的坐标系；
+ * 用 View 注册的障碍物在每次开始拖拽时读取一次位置，拖拽过程中移动了的话可以调用{@link #updateObstacle(int)}。
+ * 障碍物保存在网格索引中，每次移动只检查扫过的区域所覆盖的格子，增删改也只涉及障碍物覆盖的格子。
+ * <p>
+ * 移动时先解决水平方向，再解决垂直方向。已经和 DragLayout 重叠的障碍物不会阻挡它，避免 DragLayout 被卡住。
+ */
+public class ObstacleConstraint implements DragLayout.DragConstraint {
+
+    // 障碍物网格的格子大小，单位 dp
+    private static final float CELL_SIZE = 64;
+    private static final int DEFAULT_CAPACITY = 16;
+    // 浮点误差的容忍范围，单位 px，贴着障碍物边缘停下之后不能因为误差被认为是重叠
+    private static final float EPSILON = 0.5f;
+
+    private final SpatialGrid obstacles;
+    // 下标是障碍物的 id
+    private View[] obstacleViews = new View[DEFAULT_CAPACITY];
+
+    public ObstacleConstraint(@NonNull Context context) {
+        obstacles = new SpatialGrid(CELL_SIZE * context.getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * 添加一个矩形障碍物
+     *
+     * @return 障碍物的 id，删除之前一直有效
+     */
+    public int addObstacle(float left, float top, float right, float bottom) {
+        int obstacle = obstacles.add(Math.min(left, right), Math.min(top, bottom),
+                Math.max(left, right), Math.max(top, bottom));
+        ensureCapacity(obstacle + 1);
+        obstacleViews[obstacle] = null;
+        return obstacle;
+    }
+
+    /**
+     * 用一个和 DragLayout 同一个父布局的 View 作为障碍物。
+     * 把所有兄弟 View 都注册进来也没关系，正在拖拽的 DragLayout 自己会被跳过。
+     *
+     * @return 障碍物的 id，删除之前一直有效
+     */
+    public int addObstacle(@NonNull View sibling) {
+        int obstacle = addObstacle(0, 0, 0, 0);
+        obstacleViews[obstacle] = sibling;
+        updateObstacle(obstacle);
+        return obstacle;
+    }
+
+    /**
+     * 修改矩形障碍物的范围
+     */
+    public void updateObstacle(int obstacle, float left, float top, float right, float bottom) {
+        obstacles.update(obstacle, Math.min(left, right), Math.min(top, bottom),
+                Math.max(left, right), Math.max(top, bottom));
+    }
+
+    /**
+     * 重新读取用 View 注册的障碍物的位置
+     */
+    public void updateObstacle(int obstacle) {
+        View view = obstacleViews[obstacle];
+        if (view != null) {
+            float x = view.getX();
+            float y = view.getY();
+            obstacles.update(obstacle, x, y, x + view.getWidth(), y + view.getHeight());
+        }
+    }
+
+    public void removeObstacle(int obstacle) {
+        if (obstacles.isAlive(obstacle)) {
+            obstacles.remove(obstacle);
+            obstacleViews[obstacle] = null;
+        }
+    }
+
+    public void clear() {
+        obstacles.clear();
+        Arrays.fill(obstacleViews, null);
+    }
+
+    @Override
+    public void onDragStart(View view) {
+        if (view.getParent() instanceof View) {
+            View parent = (View) view.getParent();
+            obstacles.setWorld(0, 0, parent.getWidth(), parent.getHeight());
+        }
+        for (int obstacle = 0; obstacle < obstacleViews.length; obstacle++) {
+            if (obstacleViews[obstacle] != null && obstacles.isAlive(obstacle)) {
+                updateObstacle(obstacle);
+            }
+        }
+    }
+
+    @Override
+    public float constrainX(View view, float x, float y, float toX) {
+        if (toX == x) {
+            return toX;
+        }
+        float width = view.getWidth();
+        float bottom = y + view.getHeight();
+        // 查询从当前位置到目标位置扫过的区域
+        int count = obstacles.query(Math.min(x, toX), y, Math.max(x, toX) + width, bottom);
+        for (int i = 0; i < count; i++) {
+            int obstacle = obstacles.getResult(i);
+            if (obstacleViews[obstacle] == view) {
+                continue;
+            }
+            float obstacleLeft = obstacles.getLeft(obstacle);
+            float obstacleRight = obstacles.getRight(obstacle);
+            // 只是边缘相接的障碍物不阻挡，这样才能沿着边缘滑动
+            if (obstacles.getTop(obstacle) >= bottom - EPSILON || obstacles.getBottom(obstacle) <= y + EPSILON) {
+                continue;
+            }
+            if (toX > x && obstacleLeft >= x + width - EPSILON) {
+                toX = Math.min(toX, obstacleLeft - width);
+            } else if (toX < x && obstacleRight <= x + EPSILON) {
+                toX = Math.max(toX, obstacleRight);
+            }
+        }
+        return toX;
+    }
+
+    @Override
+    public float constrainY(View view, float x, float y, float toY) {
+        if (toY == y) {
+            return toY;
+        }
+        float height = view.getHeight();
+        float right = x + view.getWidth();
+        int count = obstacles.query(x, Math.min(y, toY), right, Math.max(y, toY) + height);
+        for (int i = 0; i < count; i++) {
+            int obstacle = obstacles.getResult(i);
+            if (obstacleViews[obstacle] == view) {
+                continue;
+            }
+            float obstacleTop = obstacles.getTop(obstacle);
+            float obstacleBottom = obstacles.getBottom(obstacle);
+            if (obstacles.getLeft(obstacle) >= right - EPSILON || obstacles.getRight(obstacle) <= x + EPSILON) {
+                continue;
+            }
+            if (toY > y && obstacleTop >= y + height - EPSILON) {
+                toY = Math.min(toY, obstacleTop - height);
+            } else if (toY < y && obstacleBottom <= y + EPSILON) {
+                toY = Math.max(toY, obstacleBottom);
+            }
+        }
+        return toY;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= obstacleViews.length) {
+            return;
+        }
+        obstacleViews = Arrays.copyOf(obstacleViews, Math.max(capacity, obstacleViews.length * 2));
+    }
+}
@@ -0,0 +1,229 @@
+package com.biubiu.widget.layout;
+
+import java.util.Arrays;
+
+/**
+ * {@link DragSolver.Algorithm}的内置实现，只访问{@link DragSolver.Task}中的基本类型数据，可以在任意线程运行
+ */
+final class SolverAlgorithms {
+
+    private SolverAlgorithms() {
+    }
+
+    /**
+     * 反复检查重叠，把可以移动的一方沿着重叠最少的方向推开，直到没有重叠或者达到最大轮数。
+     * 用网格索引查找重叠，每一轮的开销和 child 的个数成正比，而不是平方。
+     */
+    static final class ResolveOverlaps implements DragSolver.Algorithm {
+
+        private static final int MAX_PASSES = 32;
+        // 浮点误差的容忍范围，单位 px，推开之后贴着边缘的两个矩形不能因为误差被认为是重叠
+        private static final float EPSILON = 0.5f;
+
+        @Override
+        public void solve(DragSolver.Task task) {
+            int count = task.getCount();
+            if (count < 2) {
+                return;
+            }
+            // 格子大小取平均尺寸，GONE 的 child 不算
+            float sizeSum = 0;
+            int sizeCount = 0;
+            for (int i = 0; i < count; i++) {
+                float size = Math.max(task.getWidth(i), task.getHeight(i));
+                if (size > 0) {
+                    sizeSum += size;
+                    sizeCount++;
+                }
+            }
+            SpatialGrid grid = new SpatialGrid(Math.max(1, sizeCount == 0 ? 0 : sizeSum / sizeCount));
+            grid.setWorld(task.getBoundsLeft(), task.getBoundsTop(), task.getBoundsRight(), task.getBoundsBottom());
+            for (int i = 0; i < count; i++) {
+                grid.add(task.getX(i), task.getY(i), task.getX(i) + task.getWidth(i), task.getY(i) + task.getHeight(i));
+            }
+            // 查询结果会被下一次查询覆盖，先拷贝出来
+            int[] overlaps = new int[16];
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                boolean moved = false;
+                for (int i = 0; i < count; i++) {
+                    if (task.isCancelled()) {
+                        return;
+                    }
+                    float width = task.getWidth(i);
+                    float height = task.getHeight(i);
+                    if (width <= 0 || height <= 0) {
+                        continue;
+                    }
+                    int overlapCount = grid.query(task.getX(i), task.getY(i),
+                            task.getX(i) + width, task.getY(i) + height);
+                    if (overlaps.length < overlapCount) {
+                        overlaps = new int[Math.max(overlapCount, overlaps.length * 2)];
+                    }
+                    for (int k = 0; k < overlapCount; k++) {
+                        overlaps[k] = grid.getResult(k);
+                    }
+                    for (int k = 0; k < overlapCount; k++) {
+                        int j = overlaps[k];
+                        if (j != i && separate(task, grid, i, j)) {
+                            moved = true;
+                        }
+                    }
+                }
+                if (!moved) {
+                    return;
+                }
+            }
+        }
+
+        /*i 和 j 重叠的话推开其中可以移动的一个，都可以移动时推开 j*/
+        private static boolean separate(DragSolver.Task task, SpatialGrid grid, int i, int j) {
+            int moving;
+            int fixed;
+            if (task.isMovable(j)) {
+                moving = j;
+                fixed = i;
+            } else if (task.isMovable(i)) {
+                moving = i;
+                fixed = j;
+            } else {
+                return false;
+            }
+            float movingX = task.getX(moving);
+            float movingY = task.getY(moving);
+            float movingWidth = task.getWidth(moving);
+            float movingHeight = task.getHeight(moving);
+            float fixedX = task.getX(fixed);
+            float fixedY = task.getY(fixed);
+            float overlapX = Math.min(movingX + movingWidth, fixedX + task.getWidth(fixed)) - Math.max(movingX, fixedX);
+            float overlapY = Math.min(movingY + movingHeight, fixedY + task.getHeight(fixed)) - Math.max(movingY, fixedY);
+            if (overlapX <= EPSILON || overlapY <= EPSILON) {
+                return false;
+            }
+            // 沿着重叠较少的方向，向远离对方中心的一侧推开；碰到边界推不动时换另一侧
+            if (overlapX < overlapY) {
+                float pushLeft = fixedX - movingWidth;
+                float pushRight = fixedX + task.getWidth(fixed);
+                boolean toRight = movingX + movingWidth / 2 >= fixedX + task.getWidth(fixed) / 2;
+                movingX = chooseSide(toRight ? pushRight : pushLeft, toRight ? pushLeft : pushRight,
+                        task.getBoundsLeft(), task.getBoundsRight() - movingWidth);
+            } else {
+                float pushUp = fixedY - movingHeight;
+                float pushDown = fixedY + task.getHeight(fixed);
+                boolean toBottom = movingY + movingHeight / 2 >= fixedY + task.getHeight(fixed) / 2;
+                movingY = chooseSide(toBottom ? pushDown : pushUp, toBottom ? pushUp : pushDown,
+                        task.getBoundsTop(), task.getBoundsBottom() - movingHeight);
+            }
+            if (movingX == task.getX(moving) && movingY == task.getY(moving)) {
+                return false;
+            }
+            task.setPosition(moving, movingX, movingY);
+            grid.update(moving, movingX, movingY, movingX + movingWidth, movingY + movingHeight);
+            return true;
+        }
+
+        /*优先的一侧在范围内就用它，否则用另一侧，都超出时限制在范围内*/
+        private static float chooseSide(float preferred, float other, float min, float max) {
+            if (preferred >= min && preferred <= max) {
+                return preferred;
+            }
+            if (other >= min && other <= max) {
+                return other;
+            }
+            return Math.max(min, Math.min(preferred, max));
+        }
+    }
+
+    /**
+     * 格子大小取可以移动的 child 中最大的宽高，放下的 DragLayout 占据离它最近的格子，
+     * 其余可以移动的 child 按照原来的阅读顺序（从上到下、从左到右）依次填进剩下的格子，
+     * 跳过被不能移动的 child 占据的格子。
+     */
+    static final class CompactGrid implements DragSolver.Algorithm {
+
+        @Override
+        public void solve(DragSolver.Task task) {
+            int count = task.getCount();
+            float cellWidth = 0;
+            float cellHeight = 0;
+            int movableCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (task.isMovable(i) || i == task.getPinned()) {
+                    cellWidth = Math.max(cellWidth, task.getWidth(i));
+                    cellHeight = Math.max(cellHeight, task.getHeight(i));
+                    movableCount++;
+                }
+            }
+            if (movableCount == 0 || cellWidth <= 0 || cellHeight <= 0) {
+                return;
+            }
+            float left = task.getBoundsLeft();
+            float top = task.getBoundsTop();
+            int columns = Math.max(1, (int) ((task.getBoundsRight() - left) / cellWidth));
+            // 行数不限，超出父布局的部分可以通过滚动看到；先估计一个足够大的行数
+            int rows = (count + columns - 1) / columns + 1;
+            boolean[] occupied = new boolean[rows * columns];
+
+            // 不能移动的 child 占据它们覆盖的格子
+            for (int i = 0; i < count; i++) {
+                if (task.isMovable(i) || i == task.getPinned() || task.getWidth(i) <= 0 || task.getHeight(i) <= 0) {
+                    continue;
+                }
+                int firstColumn = clamp((int) ((task.getX(i) - left) / cellWidth), columns);
+                int lastColumn = clamp((int) ((task.getX(i) + task.getWidth(i) - left - 1) / cellWidth), columns);
+                int firstRow = (int) Math.max(0, (task.getY(i) - top) / cellHeight);
+                int lastRow = (int) Math.max(0, (task.getY(i) + task.getHeight(i) - top - 1) / cellHeight);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    if (row >= rows) {
+                        occupied = Arrays.copyOf(occupied, (row + 1) * columns);
+                        rows = row + 1;
+                    }
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        occupied[row * columns + column] = true;
+                    }
+                }
+            }
+
+            int pinned = task.getPinned();
+            if (pinned >= 0) {
+                int column = clamp(Math.round((task.getX(pinned) - left) / cellWidth), columns);
+                int row = Math.max(0, Math.round((task.getY(pinned) - top) / cellHeight));
+                if (row >= rows) {
+                    occupied = Arrays.copyOf(occupied, (row + 1) * columns);
+                    rows = row + 1;
+                }
+                occupied[row * columns + column] = true;
+                task.setPosition(pinned, left + column * cellWidth, top + row * cellHeight);
+            }
+
+            // 按照原来所在的格子排序，高 32 位是格子序号，低 32 位是下标，相同格子时下标小的在前
+            long[] order = new long[movableCount];
+            int orderCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (!task.isMovable(i)) {
+                    continue;
+                }
+                int column = clamp((int) ((task.getX(i) + task.getWidth(i) / 2 - left) / cellWidth), columns);
+                int row = (int) Math.max(0, (task.getY(i) + task.getHeight(i) / 2 - top) / cellHeight);
+                order[orderCount++] = ((long) (row * columns + column) << 32) | i;
+            }
+            if (task.isCancelled()) {
+                return;
+            }
+            Arrays.sort(order, 0, orderCount);
+
+            int cell = 0;
+            for (int k = 0; k < orderCount; k++) {
+                while (cell < occupied.length && occupied[cell]) {
+                    cell++;
+                }
+                int i = (int) order[k];
+                task.setPosition(i, left + (cell % columns) * cellWidth, top + (cell / columns) * cellHeight);
+                cell++;
+            }
+        }
+
+        private static int clamp(int column, int columns) {
+            return Math.max(0, Math.min(column, columns - 1));
+        }
+    }
+}
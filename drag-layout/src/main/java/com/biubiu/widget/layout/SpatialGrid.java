@@ -0,0 +1,394 @@
+package com.biubiu.widget.layout;
+
+import java.util.Arrays;
+
+/**
+ * 均匀网格空间索引，索引的是一组轴对齐的矩形（点可以看成宽高为 0 的矩形）。
+ * <p>
+ * 每个矩形会登记到它覆盖的所有格子里，点查询、矩形查询只需要检查覆盖到的格子，
+ * 最近邻查询从所在格子开始一圈一圈向外找，找到的距离足够小就停止。
+ * 矩形的增删改只涉及它覆盖的格子，不需要重建整个索引。
+ * <p>
+ * 所有数据都保存在基本类型数组中，数组只在容量不够时扩容，稳定之后查询和修改都不会产生分配。
+ * 不是线程安全的。
+ */
+final class SpatialGrid {
+
+    // 每个方向最多的格子数，超过的话就把格子放大
+    private static final int MAX_CELLS_PER_AXIS = 128;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private final float cellSize;
+
+    // 网格覆盖的范围，超出范围的矩形登记在边缘的格子里，查询时同样按边缘格子处理，结果依然正确
+    private float worldLeft;
+    private float worldTop;
+    private float cellWidth;
+    private float cellHeight;
+    private int columns = 1;
+    private int rows = 1;
+    private int[] cellHeads = {NONE};
+
+    // 矩形，下标就是 id
+    private float[] lefts = new float[DEFAULT_CAPACITY];
+    private float[] tops = new float[DEFAULT_CAPACITY];
+    private float[] rights = new float[DEFAULT_CAPACITY];
+    private float[] bottoms = new float[DEFAULT_CAPACITY];
+    private boolean[] alive = new boolean[DEFAULT_CAPACITY];
+    private int[] itemFirstNodes = new int[DEFAULT_CAPACITY];
+    // 查询去重用的标记
+    private int[] itemStamps = new int[DEFAULT_CAPACITY];
+    private int itemCount;
+    private int aliveCount;
+    private int[] freeIds = new int[DEFAULT_CAPACITY];
+    private int freeIdCount;
+
+    // 格子中的节点：同一个格子的节点组成双向链表，同一个矩形的节点组成单向链表
+    private int[] nodeItems = new int[DEFAULT_CAPACITY];
+    private int[] nodeCells = new int[DEFAULT_CAPACITY];
+    private int[] nodeNexts = new int[DEFAULT_CAPACITY];
+    private int[] nodePrevs = new int[DEFAULT_CAPACITY];
+    private int[] nodeItemNexts = new int[DEFAULT_CAPACITY];
+    private int nodeCount;
+    private int freeNode = NONE;
+
+    // 查询结果
+    private int[] results = new int[DEFAULT_CAPACITY];
+    private int resultCount;
+    private int stamp;
+
+    /**
+     * @param cellSize 期望的格子大小，一般取索引对象的典型尺寸
+     */
+    SpatialGrid(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize 必须大于 0");
+        }
+        this.cellSize = cellSize;
+        this.cellWidth = cellSize;
+        this.cellHeight = cellSize;
+    }
+
+    /**
+     * 设置网格覆盖的范围，范围变化时所有矩形会重新登记。
+     */
+    void setWorld(float left, float top, float right, float bottom) {
+        float width = Math.max(right - left, 0);
+        float height = Math.max(bottom - top, 0);
+        int newColumns = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(width / cellSize)));
+        int newRows = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(height / cellSize)));
+        float newCellWidth = Math.max(cellSize, width / newColumns);
+        float newCellHeight = Math.max(cellSize, height / newRows);
+        if (left == worldLeft && top == worldTop && newColumns == columns && newRows == rows
+                && newCellWidth == cellWidth && newCellHeight == cellHeight) {
+            return;
+        }
+        worldLeft = left;
+        worldTop = top;
+        columns = newColumns;
+        rows = newRows;
+        cellWidth = newCellWidth;
+        cellHeight = newCellHeight;
+        if (cellHeads.length < columns * rows) {
+            cellHeads = new int[columns * rows];
+        }
+        Arrays.fill(cellHeads, NONE);
+        nodeCount = 0;
+        freeNode = NONE;
+        for (int id = 0; id < itemCount; id++) {
+            itemFirstNodes[id] = NONE;
+            if (alive[id]) {
+                insertNodes(id);
+            }
+        }
+    }
+
+    /**
+     * 添加一个矩形
+     *
+     * @return 矩形的 id，删除之前一直有效
+     */
+    int add(float left, float top, float right, float bottom) {
+        int id;
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+        } else {
+            ensureItemCapacity(itemCount + 1);
+            id = itemCount++;
+        }
+        lefts[id] = left;
+        tops[id] = top;
+        rights[id] = right;
+        bottoms[id] = bottom;
+        alive[id] = true;
+        itemFirstNodes[id] = NONE;
+        itemStamps[id] = 0;
+        aliveCount++;
+        insertNodes(id);
+        return id;
+    }
+
+    /**
+     * 修改一个矩形，覆盖的格子没有变化时只修改数据
+     */
+    void update(int id, float left, float top, float right, float bottom) {
+        checkId(id);
+        boolean sameCells = column(left) == column(lefts[id]) && column(right) == column(rights[id])
+                && row(top) == row(tops[id]) && row(bottom) == row(bottoms[id]);
+        if (!sameCells) {
+            removeNodes(id);
+        }
+        lefts[id] = left;
+        tops[id] = top;
+        rights[id] = right;
+        bottoms[id] = bottom;
+        if (!sameCells) {
+            insertNodes(id);
+        }
+    }
+
+    void remove(int id) {
+        checkId(id);
+        removeNodes(id);
+        alive[id] = false;
+        aliveCount--;
+        if (freeIds.length <= freeIdCount) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    /*删除所有矩形，id 从 0 重新开始分配*/
+    void clear() {
+        Arrays.fill(cellHeads, NONE);
+        Arrays.fill(alive, 0, itemCount, false);
+        itemCount = 0;
+        aliveCount = 0;
+        freeIdCount = 0;
+        nodeCount = 0;
+        freeNode = NONE;
+        resultCount = 0;
+    }
+
+    int size() {
+        return aliveCount;
+    }
+
+    boolean isAlive(int id) {
+        return id >= 0 && id < itemCount && alive[id];
+    }
+
+    float getLeft(int id) {
+        return lefts[id];
+    }
+
+    float getTop(int id) {
+        return tops[id];
+    }
+
+    float getRight(int id) {
+        return rights[id];
+    }
+
+    float getBottom(int id) {
+        return bottoms[id];
+    }
+
+    /**
+     * 查询和矩形相交（包括边相接）的所有矩形，结果通过{@link #getResult(int)}获取，在下一次查询之前有效
+     *
+     * @return 结果个数
+     */
+    int query(float left, float top, float right, float bottom) {
+        resultCount = 0;
+        nextStamp();
+        int fromColumn = column(left);
+        int toColumn = column(right);
+        int fromRow = row(top);
+        int toRow = row(bottom);
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromColumn; c <= toColumn; c++) {
+                for (int node = cellHeads[r * columns + c]; node != NONE; node = nodeNexts[node]) {
+                    int id = nodeItems[node];
+                    if (itemStamps[id] == stamp) {
+                        continue;
+                    }
+                    itemStamps[id] = stamp;
+                    if (lefts[id] <= right && rights[id] >= left && tops[id] <= bottom && bottoms[id] >= top) {
+                        addResult(id);
+                    }
+                }
+            }
+        }
+        return resultCount;
+    }
+
+    /*查询包含这个点的所有矩形*/
+    int queryPoint(float x, float y) {
+        return query(x, y, x, y);
+    }
+
+    int getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * 查找离点最近的矩形，点在矩形内部时距离为 0
+     *
+     * @param maxDistance 超过这个距离的矩形不考虑
+     * @return 矩形的 id，没有找到返回 -1
+     */
+    int nearest(float x, float y, float maxDistance) {
+        if (aliveCount == 0) {
+            return NONE;
+        }
+        int centerColumn = column(x);
+        int centerRow = row(y);
+        float minCell = Math.min(cellWidth, cellHeight);
+        float bestDistance = maxDistance;
+        float bestDistanceSquare = maxDistance * maxDistance;
+        int bestId = NONE;
+        int maxRing = Math.max(columns, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // 第 ring 圈的格子离点至少有 (ring - 1) 个格子的距离
+            if (ring > 1 && (ring - 1) * minCell > bestDistance) {
+                break;
+            }
+            int fromRow = centerRow - ring;
+            int toRow = centerRow + ring;
+            int fromColumn = centerColumn - ring;
+            int toColumn = centerColumn + ring;
+            for (int r = Math.max(fromRow, 0); r <= Math.min(toRow, rows - 1); r++) {
+                boolean edgeRow = r == fromRow || r == toRow;
+                // 中间的行只需要检查两端的格子
+                int step = edgeRow ? 1 : Math.max(toColumn - fromColumn, 1);
+                for (int c = fromColumn; c <= toColumn; c += step) {
+                    if (c < 0 || c >= columns) {
+                        continue;
+                    }
+                    for (int node = cellHeads[r * columns + c]; node != NONE; node = nodeNexts[node]) {
+                        int id = nodeItems[node];
+                        float dx = Math.max(Math.max(lefts[id] - x, x - rights[id]), 0);
+                        float dy = Math.max(Math.max(tops[id] - y, y - bottoms[id]), 0);
+                        float distanceSquare = dx * dx + dy * dy;
+                        if (distanceSquare <= bestDistanceSquare
+                                && (bestId == NONE || distanceSquare < bestDistanceSquare || id < bestId)) {
+                            bestDistanceSquare = distanceSquare;
+                            bestDistance = (float) Math.sqrt(distanceSquare);
+                            bestId = id;
+                        }
+                    }
+                }
+            }
+        }
+        return bestId;
+    }
+
+    private int column(float x) {
+        int column = (int) Math.floor((x - worldLeft) / cellWidth);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    private int row(float y) {
+        int row = (int) Math.floor((y - worldTop) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    private void insertNodes(int id) {
+        int fromColumn = column(lefts[id]);
+        int toColumn = column(rights[id]);
+        int fromRow = row(tops[id]);
+        int toRow = row(bottoms[id]);
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromColumn; c <= toColumn; c++) {
+                int cell = r * columns + c;
+                int node = obtainNode();
+                nodeItems[node] = id;
+                nodeCells[node] = cell;
+                nodePrevs[node] = NONE;
+                nodeNexts[node] = cellHeads[cell];
+                if (cellHeads[cell] != NONE) {
+                    nodePrevs[cellHeads[cell]] = node;
+                }
+                cellHeads[cell] = node;
+                nodeItemNexts[node] = itemFirstNodes[id];
+                itemFirstNodes[id] = node;
+            }
+        }
+    }
+
+    private void removeNodes(int id) {
+        int node = itemFirstNodes[id];
+        while (node != NONE) {
+            int next = nodeNexts[node];
+            int prev = nodePrevs[node];
+            if (prev != NONE) {
+                nodeNexts[prev] = next;
+            } else {
+                cellHeads[nodeCells[node]] = next;
+            }
+            if (next != NONE) {
+                nodePrevs[next] = prev;
+            }
+            int itemNext = nodeItemNexts[node];
+            // 放回空闲链表，借用 nodeNexts 串起来
+            nodeNexts[node] = freeNode;
+            freeNode = node;
+            node = itemNext;
+        }
+        itemFirstNodes[id] = NONE;
+    }
+
+    private int obtainNode() {
+        if (freeNode != NONE) {
+            int node = freeNode;
+            freeNode = nodeNexts[node];
+            return node;
+        }
+        if (nodeCount == nodeItems.length) {
+            int capacity = nodeCount * 2;
+            nodeItems = Arrays.copyOf(nodeItems, capacity);
+            nodeCells = Arrays.copyOf(nodeCells, capacity);
+            nodeNexts = Arrays.copyOf(nodeNexts, capacity);
+            nodePrevs = Arrays.copyOf(nodePrevs, capacity);
+            nodeItemNexts = Arrays.copyOf(nodeItemNexts, capacity);
+        }
+        return nodeCount++;
+    }
+
+    private void ensureItemCapacity(int capacity) {
+        if (capacity <= lefts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, lefts.length * 2);
+        lefts = Arrays.copyOf(lefts, newCapacity);
+        tops = Arrays.copyOf(tops, newCapacity);
+        rights = Arrays.copyOf(rights, newCapacity);
+        bottoms = Arrays.copyOf(bottoms, newCapacity);
+        alive = Arrays.copyOf(alive, newCapacity);
+        itemFirstNodes = Arrays.copyOf(itemFirstNodes, newCapacity);
+        itemStamps = Arrays.copyOf(itemStamps, newCapacity);
+    }
+
+    private void addResult(int id) {
+        if (resultCount == results.length) {
+            results = Arrays.copyOf(results, resultCount * 2);
+        }
+        results[resultCount++] = id;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(itemStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    private void checkId(int id) {
+        if (!isAlive(id)) {
+            throw new IllegalArgumentException("无效的 id：" + id);
+        }
+    }
+}
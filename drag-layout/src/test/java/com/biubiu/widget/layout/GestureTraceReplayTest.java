@@ -0,0 +1,528 @@
+package com.biubiu.widget.layout;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.RelativeLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 在 JVM 上全速回放大量手势轨迹，检查拖拽、点击和长按的结果，以及缓存、等待中的回调和每个事件的分配。
+ * <p>
+ * 合成的轨迹用固定的种子生成；在真机上用{@link GestureTraceRecorder}录制的轨迹可以拼接起来放在
+ * src/test/resources/{@value #RECORDED_TRACES}，会被一起回放，只检查不依赖手势内容的部分。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class GestureTraceReplayTest {
+
+    private static final String RECORDED_TRACES = "gesture-traces.dlgt";
+    private static final int TRACE_COUNT = 2000;
+    private static final long SEED = 20191107;
+
+    private static final int PARENT_WIDTH = 300;
+    private static final int PARENT_HEIGHT = 400;
+    private static final int SIZE = 100;
+    // 手势结束之后再等待的时间，让所有的回调都执行完
+    private static final long SETTLE_TIME = 1000;
+    // 拖拽过程中每个事件允许的分配，单位 byte。目前是 0，留一点余量，主要用来发现每个事件都拷贝 MotionEvent 之类的回退
+    private static final long ALLOCATION_BUDGET_PER_EVENT = 64;
+    private static final float POSITION_TOLERANCE = 0.01f;
+
+    private Scheduler scheduler;
+    private DragLayout dragLayout;
+    private int touchSlop;
+    private int tapTimeout;
+    private int longPressTimeout;
+
+    private int clicks;
+    private int longClicks;
+    private int childEvents;
+    private int dragStarts;
+    private int dragEnds;
+    private float movedX;
+    private float movedY;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout parent = new FrameLayout(activity);
+        dragLayout = new DragLayout(activity);
+        View child = new View(activity);
+        child.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                clicks++;
+            }
+        });
+        child.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                longClicks++;
+                return true;
+            }
+        });
+        child.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                childEvents++;
+                return false;
+            }
+        });
+        dragLayout.addView(child, new RelativeLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        dragLayout.setOnDragListener(new DragLayout.OnDragListener() {
+            @Override
+            public void onDragStart(View view) {
+                dragStarts++;
+            }
+
+            @Override
+            public void onDragEnd(View view) {
+                dragEnds++;
+            }
+        });
+        parent.addView(dragLayout, new FrameLayout.LayoutParams(SIZE, SIZE));
+        activity.setContentView(parent, new ViewGroup.LayoutParams(PARENT_WIDTH, PARENT_HEIGHT));
+        ShadowLooper.idleMainLooper();
+        assertEquals(SIZE, dragLayout.getWidth());
+        assertEquals(PARENT_WIDTH, parent.getWidth());
+
+        touchSlop = ViewConfiguration.get(activity).getScaledTouchSlop();
+        tapTimeout = ViewConfiguration.getTapTimeout();
+        longPressTimeout = ViewConfiguration.getLongPressTimeout();
+        // 暂停之后所有的回调都只在推进时间的时候执行，和真机上的执行顺序一致
+        scheduler = Robolectric.getForegroundThreadScheduler();
+        scheduler.pause();
+    }
+
+    @Test
+    public void replaySyntheticTraces() {
+        SyntheticGestures gestures = newGestures();
+        int baseline = scheduler.size();
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            switch (i % 5) {
+                case 0:
+                    checkTap(gestures.tap());
+                    break;
+                case 1:
+                    checkLongPress(gestures.longPress());
+                    break;
+                case 2:
+                    checkDrag(gestures.drag(true, true), DragLayout.DragLimited.INSIDE_PARENT);
+                    break;
+                case 3:
+                    boolean horizontal = gestures.getRandom().nextBoolean();
+                    checkDrag(gestures.drag(horizontal, !horizontal), horizontal
+                            ? DragLayout.DragLimited.INSIDE_PARENT | DragLayout.DragLimited.HORIZONTAL
+                            : DragLayout.DragLimited.INSIDE_PARENT | DragLayout.DragLimited.VERTICAL);
+                    break;
+                default:
+                    checkLockedAxis(gestures.verticalSwipe());
+                    break;
+            }
+            assertEquals("缓存的事件没有清空", 0, dragLayout.getMotionEventCacheSize());
+            assertTrue("手势结束之后还有等待中的回调", scheduler.size() <= baseline);
+            assertFalse(dragLayout.isAnimating());
+        }
+    }
+
+    @Test
+    public void jitteryTapIsNotDrag() {
+        SyntheticGestures gestures = newGestures();
+        for (int i = 0; i < TRACE_COUNT / 10; i++) {
+            checkTap(gestures.tapWithJitter());
+        }
+    }
+
+    @Test
+    public void predictedDragEndsAtFinger() {
+        SyntheticGestures gestures = newGestures();
+        dragLayout.setDragLimited(DragLayout.DragLimited.WITHOUT_LIMITED);
+        dragLayout.setPredictionMode(DragLayout.PredictionMode.LINEAR);
+        for (int i = 0; i < TRACE_COUNT / 10; i++) {
+            GestureTrace trace = gestures.drag(true, true);
+            resetPosition(SIZE, SIZE);
+            replay(trace);
+            // 拖拽中用的是预测的位置，抬手之后必须回到手指实际的位置
+            int last = trace.size() - 1;
+            assertPosition(SIZE + trace.getX(last) - trace.getX(0), SIZE + trace.getY(last) - trace.getY(0));
+        }
+    }
+
+    @Test
+    public void handoffDragDoesNotJump() {
+        SyntheticGestures gestures = newGestures();
+        dragLayout.setDragLimited(DragLayout.DragLimited.WITHOUT_LIMITED);
+        for (int i = 0; i < TRACE_COUNT / 10; i++) {
+            GestureTrace trace = gestures.handoffDrag();
+            resetPosition(SIZE, SIZE);
+            int lastDragEnds = dragEnds;
+            replay(trace);
+            // 跟随的手指抬起之后换成另一根，只累加正在跟随的手指的位移，不会跳到新手指的位置
+            assertPosition(SIZE + getFollowedDistance(trace, true), SIZE + getFollowedDistance(trace, false));
+            assertEquals("换手指不应该结束拖拽", lastDragEnds + 1, dragEnds);
+        }
+    }
+
+    @Test
+    public void replaySplitDragInCoordinator() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        DragCoordinator coordinator = new DragCoordinator(activity);
+        coordinator.setMultiDragEnable(true);
+        DragLayout first = new DragLayout(activity);
+        DragLayout second = new DragLayout(activity);
+        first.setDragLimited(DragLayout.DragLimited.WITHOUT_LIMITED);
+        second.setDragLimited(DragLayout.DragLimited.WITHOUT_LIMITED);
+        coordinator.addView(first, new RelativeLayout.LayoutParams(SIZE, SIZE));
+        coordinator.addView(second, new RelativeLayout.LayoutParams(SIZE, SIZE));
+        activity.setContentView(coordinator, new ViewGroup.LayoutParams(PARENT_WIDTH, PARENT_HEIGHT));
+        ShadowLooper.idleMainLooper();
+
+        SyntheticGestures gestures = newGestures();
+        for (int i = 0; i < TRACE_COUNT / 20; i++) {
+            first.setX(0);
+            first.setY(0);
+            second.setX(SIZE * 2);
+            second.setY(SIZE * 2);
+            GestureTrace trace = gestures.twoFingerDrag(SIZE / 2f, SIZE / 2f, SIZE * 2.5f, SIZE * 2.5f);
+            long downTime = SystemClock.uptimeMillis();
+            for (int k = 0; k < trace.size(); k++) {
+                scheduler.advanceTo(downTime + trace.getTime(k));
+                MotionEvent event = trace.obtainEvent(k, downTime);
+                coordinator.dispatchTouchEvent(event);
+                event.recycle();
+            }
+            scheduler.advanceBy(SETTLE_TIME);
+            // 每个 DragLayout 只跟随按在自己上面的那根手指
+            int last = trace.size() - 1;
+            int lift = last - 1;
+            assertEquals(trace.getX(lift, 0) - trace.getX(0, 0), first.getX(), POSITION_TOLERANCE);
+            assertEquals(trace.getY(lift, 0) - trace.getY(0, 0), first.getY(), POSITION_TOLERANCE);
+            assertEquals(SIZE * 2 + trace.getX(last) - trace.getX(1, 1), second.getX(), POSITION_TOLERANCE);
+            assertEquals(SIZE * 2 + trace.getY(last) - trace.getY(1, 1), second.getY(), POSITION_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void traceRoundTrip() throws IOException {
+        SyntheticGestures gestures = newGestures();
+        List<GestureTrace> traces = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < 100; i++) {
+            GestureTrace trace = i % 3 == 0 ? gestures.tap() : i % 3 == 1 ? gestures.drag(true, true) : gestures.handoffDrag();
+            traces.add(trace);
+            trace.writeTo(out);
+        }
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (GestureTrace expected : traces) {
+            assertTraceEquals(expected, GestureTrace.readFrom(in));
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void corruptActionIsStreamCorrupted() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        newGestures().tap().writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        // magic、version、宽、高、事件个数之后就是第一个事件的 action
+        data[4 + 1 + 4 + 4 + 4] = 0x7F;
+        try {
+            GestureTrace.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+            throw new AssertionError("损坏的 action 应该读取失败");
+        } catch (StreamCorruptedException expected) {
+            // 损坏的数据只会得到 IOException，不会是 IllegalArgumentException
+        }
+    }
+
+    @Test
+    public void recorderCapturesDispatchedEvents() {
+        final List<GestureTrace> recorded = new ArrayList<>();
+        dragLayout.setGestureTraceRecorder(new GestureTraceRecorder(new GestureTraceRecorder.OnTraceListener() {
+            @Override
+            public void onTrace(View view, GestureTrace trace) {
+                try {
+                    // 回调之后 trace 会被复用，先拷贝一份
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    trace.writeTo(new DataOutputStream(bytes));
+                    recorded.add(GestureTrace.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }));
+        SyntheticGestures gestures = newGestures();
+        GestureTrace tap = gestures.tap();
+        GestureTrace drag = gestures.drag(true, true);
+        GestureTrace handoff = gestures.handoffDrag();
+        dragLayout.setDragLimited(DragLayout.DragLimited.WITHOUT_LIMITED);
+        resetPosition(SIZE, SIZE);
+        replay(tap);
+        replay(drag);
+        replay(handoff);
+
+        assertEquals(3, recorded.size());
+        assertTraceEquals(tap, recorded.get(0));
+        // 拖拽过程中 DragLayout 移动了，录制的坐标依旧是 ACTION_DOWN 时的坐标系
+        assertTraceEquals(drag, recorded.get(1));
+        // ACTION_POINTER_DOWN、ACTION_POINTER_UP 和每根手指的 id 都录制下来了
+        assertTraceEquals(handoff, recorded.get(2));
+        assertEquals(SIZE, recorded.get(0).getWidth());
+    }
+
+    @Test
+    public void dragAllocationsPerEvent() {
+        // setX、setY 在 Robolectric 中的分配远大于 DragLayout 本身，这里只记录位置，不真正移动
+        dragLayout.setMovementStrategy(new DragLayout.MovementStrategy() {
+            @Override
+            public void moveTo(View view, float x, float y) {
+                movedX = x;
+                movedY = y;
+            }
+
+            @Override
+            public void commit(View view) {
+            }
+        });
+        SyntheticGestures gestures = newGestures();
+        GestureTrace trace = gestures.drag(true, true);
+        // 先预热，让数组扩容、类加载之类的一次性分配都发生在统计之前
+        for (int i = 0; i < 50; i++) {
+            resetPosition(SIZE, SIZE);
+            replay(trace);
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        long threadId = Thread.currentThread().getId();
+        MotionEvent[] events = new MotionEvent[trace.size()];
+        long allocated = 0;
+        int count = 0;
+        for (int round = 0; round < 20; round++) {
+            resetPosition(SIZE, SIZE);
+            long downTime = SystemClock.uptimeMillis();
+            for (int i = 0; i < trace.size(); i++) {
+                events[i] = trace.obtainEvent(i, downTime);
+            }
+            for (int i = 0; i < trace.size(); i++) {
+                scheduler.advanceTo(downTime + trace.getTime(i));
+                // 只统计拖拽开始之后 DragLayout 处理事件的分配
+                boolean measured = dragStarts > dragEnds && events[i].getActionMasked() == MotionEvent.ACTION_MOVE;
+                long before = threadBean.getThreadAllocatedBytes(threadId);
+                dragLayout.dispatchTouchEvent(events[i]);
+                if (measured) {
+                    allocated += threadBean.getThreadAllocatedBytes(threadId) - before;
+                    count++;
+                }
+            }
+            scheduler.advanceBy(SETTLE_TIME);
+            for (MotionEvent event : events) {
+                event.recycle();
+            }
+        }
+        assertTrue(count > 0);
+        assertTrue(movedX != 0 || movedY != 0);
+        long perEvent = allocated / count;
+        assertTrue("拖拽时每个事件分配了 " + perEvent + " byte", perEvent <= ALLOCATION_BUDGET_PER_EVENT);
+    }
+
+    @Test
+    public void replayRecordedTraces() throws IOException {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(RECORDED_TRACES);
+        assumeTrue("没有录制的轨迹", resource != null);
+        DataInputStream in = new DataInputStream(resource);
+        int baseline = scheduler.size();
+        try {
+            while (in.available() > 0) {
+                GestureTrace trace = GestureTrace.readFrom(in);
+                resetPosition((PARENT_WIDTH - SIZE) / 2f, (PARENT_HEIGHT - SIZE) / 2f);
+                replay(trace);
+                assertEquals(0, dragLayout.getMotionEventCacheSize());
+                assertTrue(scheduler.size() <= baseline);
+                assertTrue(dragLayout.getX() >= dragLayout.getMinDragX() - POSITION_TOLERANCE);
+                assertTrue(dragLayout.getX() <= dragLayout.getMaxDragX() + POSITION_TOLERANCE);
+                assertTrue(dragLayout.getY() >= dragLayout.getMinDragY() - POSITION_TOLERANCE);
+                assertTrue(dragLayout.getY() <= dragLayout.getMaxDragY() + POSITION_TOLERANCE);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private SyntheticGestures newGestures() {
+        return new SyntheticGestures(SEED, SIZE, SIZE, touchSlop, tapTimeout, longPressTimeout);
+    }
+
+    private void checkTap(GestureTrace trace) {
+        dragLayout.setDragLimited(DragLayout.DragLimited.INSIDE_PARENT);
+        resetPosition(SIZE / 2f, SIZE);
+        int lastClicks = clicks;
+        int lastLongClicks = longClicks;
+        replay(trace);
+        assertEquals("点击没有交给 child", lastClicks + 1, clicks);
+        assertEquals(lastLongClicks, longClicks);
+        assertPosition(SIZE / 2f, SIZE);
+        assertEquals(0, dragLayout.getTapLatency());
+    }
+
+    private void checkLongPress(GestureTrace trace) {
+        dragLayout.setDragLimited(DragLayout.DragLimited.INSIDE_PARENT);
+        resetPosition(SIZE, SIZE / 2f);
+        int lastClicks = clicks;
+        int lastLongClicks = longClicks;
+        replay(trace);
+        assertEquals("长按没有交给 child", lastLongClicks + 1, longClicks);
+        assertEquals(lastClicks, clicks);
+        assertPosition(SIZE, SIZE / 2f);
+    }
+
+    private void checkDrag(GestureTrace trace, int limited) {
+        dragLayout.setDragLimited(limited);
+        float startX = SIZE / 2f + (trace.getX(0) % SIZE);
+        float startY = SIZE + (trace.getY(0) % SIZE);
+        resetPosition(startX, startY);
+        int lastChildEvents = childEvents;
+        int lastDragStarts = dragStarts;
+        int lastDragEnds = dragEnds;
+
+        // 每个事件的位移依次应用，每一步都限制在父布局内
+        float minX = dragLayout.getMinDragX();
+        float maxX = dragLayout.getMaxDragX();
+        float minY = dragLayout.getMinDragY();
+        float maxY = dragLayout.getMaxDragY();
+        boolean horizontal = dragLayout.isDragHorizontal();
+        boolean vertical = dragLayout.isDragVertical();
+        float expectedX = startX;
+        float expectedY = startY;
+        for (int i = 1; i < trace.size(); i++) {
+            if (trace.getAction(i) != MotionEvent.ACTION_MOVE) {
+                continue;
+            }
+            if (horizontal) {
+                expectedX = Math.max(minX, Math.min(expectedX + trace.getX(i) - trace.getX(i - 1), maxX));
+            }
+            if (vertical) {
+                expectedY = Math.max(minY, Math.min(expectedY + trace.getY(i) - trace.getY(i - 1), maxY));
+            }
+        }
+
+        replay(trace);
+        assertEquals(lastDragStarts + 1, dragStarts);
+        assertEquals(lastDragEnds + 1, dragEnds);
+        assertEquals("拖拽的事件不应该交给 child", lastChildEvents, childEvents);
+        assertPosition(expectedX, expectedY);
+    }
+
+    private void checkLockedAxis(GestureTrace trace) {
+        dragLayout.setDragLimited(DragLayout.DragLimited.INSIDE_PARENT | DragLayout.DragLimited.HORIZONTAL);
+        resetPosition(SIZE, SIZE);
+        int lastChildEvents = childEvents;
+        int lastDragStarts = dragStarts;
+        replay(trace);
+        assertEquals(lastDragStarts, dragStarts);
+        assertEquals("只在不能拖拽的方向上移动，事件应该全部交给 child", lastChildEvents + trace.size(), childEvents);
+        assertPosition(SIZE, SIZE);
+    }
+
+    /*按照轨迹中的时间推进时钟，依次分发每个事件*/
+    private void replay(GestureTrace trace) {
+        long downTime = SystemClock.uptimeMillis();
+        for (int i = 0; i < trace.size(); i++) {
+            scheduler.advanceTo(downTime + trace.getTime(i));
+            MotionEvent event = trace.obtainEvent(i, downTime);
+            dragLayout.dispatchTouchEvent(event);
+            event.recycle();
+        }
+        scheduler.advanceBy(SETTLE_TIME);
+    }
+
+    /*轨迹中 DragLayout 应该跟随的距离：从 id 为 0 的手指开始，它抬起之后换成剩下的手指，只累加 ACTION_MOVE 的位移*/
+    private static float getFollowedDistance(GestureTrace trace, boolean horizontal) {
+        int followedId = 0;
+        float distance = 0;
+        for (int i = 1; i < trace.size(); i++) {
+            int action = trace.getAction(i) & MotionEvent.ACTION_MASK;
+            if (action == MotionEvent.ACTION_MOVE) {
+                int current = findPointerIndex(trace, i, followedId);
+                int previous = findPointerIndex(trace, i - 1, followedId);
+                distance += horizontal
+                        ? trace.getX(i, current) - trace.getX(i - 1, previous)
+                        : trace.getY(i, current) - trace.getY(i - 1, previous);
+            } else if (action == MotionEvent.ACTION_POINTER_UP) {
+                int actionIndex = (trace.getAction(i) & MotionEvent.ACTION_POINTER_INDEX_MASK)
+                        >> MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+                if (trace.getPointerId(i, actionIndex) == followedId) {
+                    followedId = trace.getPointerId(i, actionIndex == 0 ? 1 : 0);
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static int findPointerIndex(GestureTrace trace, int index, int pointerId) {
+        for (int k = 0; k < trace.getPointerCount(index); k++) {
+            if (trace.getPointerId(index, k) == pointerId) {
+                return k;
+            }
+        }
+        throw new AssertionError("第 " + index + " 个事件中没有 id 为 " + pointerId + " 的手指");
+    }
+
+    private void resetPosition(float x, float y) {
+        dragLayout.setX(x);
+        dragLayout.setY(y);
+    }
+
+    private void assertPosition(float x, float y) {
+        assertEquals(x, dragLayout.getX(), POSITION_TOLERANCE);
+        assertEquals(y, dragLayout.getY(), POSITION_TOLERANCE);
+    }
+
+    private static void assertTraceEquals(GestureTrace expected, GestureTrace actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getAction(i), actual.getAction(i));
+            assertEquals(expected.getTime(i), actual.getTime(i));
+            assertEquals(expected.getPointerCount(i), actual.getPointerCount(i));
+            for (int k = 0; k < expected.getPointerCount(i); k++) {
+                assertEquals(expected.getPointerId(i, k), actual.getPointerId(i, k));
+                assertEquals(expected.getX(i, k), actual.getX(i, k), POSITION_TOLERANCE);
+                assertEquals(expected.getY(i, k), actual.getY(i, k), POSITION_TOLERANCE);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.biubiu.widget.layout;
+
+import android.view.MotionEvent;
+
+import java.util.Random;
+
+/**
+ * 生成用于回放的合成手势，坐标是 DragLayout 的坐标系，时间间隔和真机上一帧一个事件差不多
+ */
+final class SyntheticGestures {
+
+    // 事件之间的时间间隔，单位 ms
+    static final int EVENT_INTERVAL = 16;
+
+    private final Random random;
+    private final int width;
+    private final int height;
+    private final int touchSlop;
+    private final int tapTimeout;
+    private final int longPressTimeout;
+    // 构建多指事件用的
+    private final int[] pointerIds = new int[2];
+    private final float[] pointerXs = new float[2];
+    private final float[] pointerYs = new float[2];
+
+    SyntheticGestures(long seed, int width, int height, int touchSlop, int tapTimeout, int longPressTimeout) {
+        this.random = new Random(seed);
+        this.width = width;
+        this.height = height;
+        this.touchSlop = touchSlop;
+        this.tapTimeout = tapTimeout;
+        this.longPressTimeout = longPressTimeout;
+    }
+
+    Random getRandom() {
+        return random;
+    }
+
+    /*在 tap timeout 之前抬手，移动不超过 touch slop 的一半*/
+    GestureTrace tap() {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x = randomInside(width);
+        float y = randomInside(height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x, y);
+        int time = 0;
+        int moves = random.nextInt(3);
+        for (int i = 0; i < moves && time + EVENT_INTERVAL < tapTimeout / 2; i++) {
+            time += random.nextInt(EVENT_INTERVAL) + 1;
+            trace.add(MotionEvent.ACTION_MOVE, time, x + jitter(), y + jitter());
+        }
+        time = Math.max(time + 1, random.nextInt(tapTimeout / 2) + 1);
+        trace.add(MotionEvent.ACTION_UP, time, x, y);
+        return trace;
+    }
+
+    /**
+     * 手指按下之后晃动了一下再抬手：50ms 内每一帧都偏离按下的位置 touch slop 的 50%~60%（8dp 的 touch slop 就是 4~5dp），
+     * 速度不小但是距离始终没有超过 touch slop，还是点击
+     */
+    GestureTrace tapWithJitter() {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x = randomInside(width);
+        float y = randomInside(height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x, y);
+        int time = 0;
+        while (time + EVENT_INTERVAL < 50) {
+            time += EVENT_INTERVAL;
+            double angle = random.nextDouble() * Math.PI * 2;
+            float distance = touchSlop * (0.5f + random.nextFloat() * 0.1f);
+            trace.add(MotionEvent.ACTION_MOVE, time, x + (float) Math.cos(angle) * distance,
+                    y + (float) Math.sin(angle) * distance);
+        }
+        trace.add(MotionEvent.ACTION_UP, 50, x, y);
+        return trace;
+    }
+
+    /*按住超过 tap timeout + long press timeout 再抬手，移动不超过 touch slop 的一半*/
+    GestureTrace longPress() {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x = randomInside(width);
+        float y = randomInside(height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x, y);
+        int upTime = tapTimeout + longPressTimeout + 50 + random.nextInt(200);
+        for (int time = EVENT_INTERVAL * 4; time < upTime; time += EVENT_INTERVAL * 4) {
+            trace.add(MotionEvent.ACTION_MOVE, time, x + jitter(), y + jitter());
+        }
+        trace.add(MotionEvent.ACTION_UP, upTime, x, y);
+        return trace;
+    }
+
+    /**
+     * 第一个 ACTION_MOVE 就在可以拖拽的方向上超过 touch slop，之后随机移动，抬手的位置和最后一个 ACTION_MOVE 相同
+     */
+    GestureTrace drag(boolean horizontal, boolean vertical) {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x = randomInside(width);
+        float y = randomInside(height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x, y);
+        int time = EVENT_INTERVAL;
+        float jump = touchSlop * 2 + random.nextInt(touchSlop * 2);
+        if (horizontal) {
+            x += random.nextBoolean() ? jump : -jump;
+        }
+        if (vertical) {
+            y += random.nextBoolean() ? jump : -jump;
+        }
+        trace.add(MotionEvent.ACTION_MOVE, time, x, y);
+        int moves = 5 + random.nextInt(60);
+        for (int i = 0; i < moves; i++) {
+            time += EVENT_INTERVAL;
+            x += (random.nextFloat() - 0.5f) * 80;
+            y += (random.nextFloat() - 0.5f) * 80;
+            trace.add(MotionEvent.ACTION_MOVE, time, x, y);
+        }
+        trace.add(MotionEvent.ACTION_UP, time + EVENT_INTERVAL, x, y);
+        return trace;
+    }
+
+    /*只在垂直方向上移动超过 touch slop，始终在 DragLayout 的范围内*/
+    GestureTrace verticalSwipe() {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x = randomInside(width);
+        float y = touchSlop;
+        trace.add(MotionEvent.ACTION_DOWN, 0, x, y);
+        int time = 0;
+        float step = touchSlop / 2f;
+        while (y + step < height - touchSlop) {
+            time += EVENT_INTERVAL;
+            y += step;
+            trace.add(MotionEvent.ACTION_MOVE, time, x, y);
+        }
+        trace.add(MotionEvent.ACTION_UP, time + EVENT_INTERVAL, x, y);
+        return trace;
+    }
+
+    /**
+     * 第一根手指拖拽，中途第二根手指按下，两根手指一起移动之后第一根手指先抬起，第二根手指继续拖拽到抬手。
+     * 第一根手指的 id 是 0，第二根是 1；只有 ACTION_MOVE 改变手指的位置
+     */
+    GestureTrace handoffDrag() {
+        GestureTrace trace = new GestureTrace(width, height);
+        float x0 = randomInside(width);
+        float y0 = randomInside(height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x0, y0);
+        int time = EVENT_INTERVAL;
+        x0 += random.nextBoolean() ? touchSlop * 2 : -touchSlop * 2;
+        trace.add(MotionEvent.ACTION_MOVE, time, x0, y0);
+        for (int i = random.nextInt(5); i > 0; i--) {
+            time += EVENT_INTERVAL;
+            x0 += randomStep();
+            y0 += randomStep();
+            trace.add(MotionEvent.ACTION_MOVE, time, x0, y0);
+        }
+        float x1 = randomInside(width);
+        float y1 = randomInside(height);
+        time += EVENT_INTERVAL;
+        addTwoPointers(trace, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 1), time, x0, y0, x1, y1);
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+            time += EVENT_INTERVAL;
+            x0 += randomStep();
+            y0 += randomStep();
+            x1 += randomStep();
+            y1 += randomStep();
+            addTwoPointers(trace, MotionEvent.ACTION_MOVE, time, x0, y0, x1, y1);
+        }
+        time += EVENT_INTERVAL;
+        addTwoPointers(trace, pointerAction(MotionEvent.ACTION_POINTER_UP, 0), time, x0, y0, x1, y1);
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+            time += EVENT_INTERVAL;
+            x1 += randomStep();
+            y1 += randomStep();
+            addSecondPointer(trace, MotionEvent.ACTION_MOVE, time, x1, y1);
+        }
+        addSecondPointer(trace, MotionEvent.ACTION_UP, time + EVENT_INTERVAL, x1, y1);
+        return trace;
+    }
+
+    /**
+     * 两根手指分别在 (x0, y0)、(x1, y1) 几乎同时按下，第一个 ACTION_MOVE 都超过 touch slop，之后各自随机移动，
+     * 第一根手指先抬起。坐标是父布局的坐标系，只有 ACTION_MOVE 改变手指的位置
+     */
+    GestureTrace twoFingerDrag(float x0, float y0, float x1, float y1) {
+        GestureTrace trace = new GestureTrace(width, height);
+        trace.add(MotionEvent.ACTION_DOWN, 0, x0, y0);
+        int time = 1 + random.nextInt(EVENT_INTERVAL);
+        addTwoPointers(trace, pointerAction(MotionEvent.ACTION_POINTER_DOWN, 1), time, x0, y0, x1, y1);
+        time += EVENT_INTERVAL;
+        y0 += random.nextBoolean() ? touchSlop * 2 : -touchSlop * 2;
+        x1 += random.nextBoolean() ? touchSlop * 2 : -touchSlop * 2;
+        addTwoPointers(trace, MotionEvent.ACTION_MOVE, time, x0, y0, x1, y1);
+        for (int i = 5 + random.nextInt(20); i > 0; i--) {
+            time += EVENT_INTERVAL;
+            x0 += randomStep();
+            y0 += randomStep();
+            x1 += randomStep();
+            y1 += randomStep();
+            addTwoPointers(trace, MotionEvent.ACTION_MOVE, time, x0, y0, x1, y1);
+        }
+        time += EVENT_INTERVAL;
+        addTwoPointers(trace, pointerAction(MotionEvent.ACTION_POINTER_UP, 0), time, x0, y0, x1, y1);
+        addSecondPointer(trace, MotionEvent.ACTION_UP, time + EVENT_INTERVAL, x1, y1);
+        return trace;
+    }
+
+    private void addTwoPointers(GestureTrace trace, int action, int time, float x0, float y0, float x1, float y1) {
+        pointerIds[0] = 0;
+        pointerXs[0] = x0;
+        pointerYs[0] = y0;
+        pointerIds[1] = 1;
+        pointerXs[1] = x1;
+        pointerYs[1] = y1;
+        trace.add(action, time, 2, pointerIds, pointerXs, pointerYs);
+    }
+
+    /*第一根手指抬起之后，只剩下 id 是 1 的第二根手指*/
+    private void addSecondPointer(GestureTrace trace, int action, int time, float x, float y) {
+        pointerIds[0] = 1;
+        pointerXs[0] = x;
+        pointerYs[0] = y;
+        trace.add(action, time, 1, pointerIds, pointerXs, pointerYs);
+    }
+
+    private static int pointerAction(int action, int pointerIndex) {
+        return action | (pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+    }
+
+    private float randomStep() {
+        return (random.nextFloat() - 0.5f) * 40;
+    }
+
+    private float randomInside(int size) {
+        return touchSlop + random.nextFloat() * (size - touchSlop * 2);
+    }
+
+    private float jitter() {
+        return (random.nextFloat() - 0.5f) * touchSlop / 2f;
+    }
+}
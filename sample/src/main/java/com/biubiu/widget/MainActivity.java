@@ -1,6 +1,5 @@
 package com.biubiu.widget;
 
-import android.animation.ObjectAnimator;
 import android.os.Bundle;
 import android.view.MotionEvent;
 import android.view.View;
@@ -31,7 +30,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onDragEnd(View view) {
                 Toast.makeText(view.getContext(), "End", Toast.LENGTH_SHORT).show();
-                moveToCenter(dragLayout);
+                dragLayout.animateTo(400, 400);
             }
         });
 
@@ -86,23 +85,4 @@ public class MainActivity extends AppCompatActivity {
             }
         });
     }
-
-    private void moveToCenter(View view) {
-        float x = view.getX();
-        float y = view.getY();
-
-        ObjectAnimator animatorX = ObjectAnimator.ofFloat(view,
-                "x",
-                x,
-                400);
-        animatorX.setDuration(160);
-        animatorX.start();
-
-        ObjectAnimator animatorY = ObjectAnimator.ofFloat(view,
-                "y",
-                y,
-                400);
-        animatorY.setDuration(160);
-        animatorY.start();
-    }
 }